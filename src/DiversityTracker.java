@@ -0,0 +1,106 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	DiversityTracker
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Measures how similar the floor maps of an Island are (not thread safe, owned by the island
+// thread).
+//
+// For every usable cell the tracker counts how many maps hold each station type. The counts are
+// updated incrementally when a map enters or leaves the population, so the cost of a replacement
+// is one pass over the cells, no matter how large the population is. From the counts:
+//
+//	diversity()				Average normalized entropy of the station types of each cell, 0 when every
+//							map is identical and 1 when every type is equally common on every cell
+//	sampledHamming(n)		Average fraction of cells that differ between n random pairs of maps
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class DiversityTracker {
+
+    private final FloorMask mask;				// Usable cells of the tracked maps
+    private final int[][] counts;				// Maps holding each type, per usable cell
+    private int size = 0;						// Maps currently counted
+
+    public DiversityTracker(FloorMask mask) {
+        this.mask = mask;
+        this.counts = new int[mask.usableCount][ParallelGeneticAlgorithm.TYPES];
+    }
+
+    //----------------------------------------------------------------------
+    // add
+    //----------------------------------------------------------------------
+    // Counts a map entering the population.
+    //
+
+    public void add(int[][] map) {
+        for (int c = 0; c < mask.usableCount; c++) {
+            counts[c][map[mask.cellRow[c]][mask.cellCol[c]]]++;
+        }
+        size++;
+    }
+
+    //----------------------------------------------------------------------
+    // remove
+    //----------------------------------------------------------------------
+    // Stops counting a map leaving the population.
+    //
+
+    public void remove(int[][] map) {
+        for (int c = 0; c < mask.usableCount; c++) {
+            counts[c][map[mask.cellRow[c]][mask.cellCol[c]]]--;
+        }
+        size--;
+    }
+
+    //----------------------------------------------------------------------
+    // diversity
+    //----------------------------------------------------------------------
+    // Returns the average normalized per-cell entropy, between 0 and 1.
+    //
+
+    public double diversity() {
+        if (size < 2 || mask.usableCount == 0) {
+            return 0.0;
+        }
+        double maxEntropy = Math.log(ParallelGeneticAlgorithm.TYPES);
+        double total = 0.0;
+        for (int[] cell : counts) {
+            double entropy = 0.0;
+            for (int count : cell) {
+                if (count > 0) {
+                    double p = (double) count / size;
+                    entropy -= p * Math.log(p);
+                }
+            }
+            total += entropy / maxEntropy;
+        }
+        return total / mask.usableCount;
+    }
+
+    //----------------------------------------------------------------------
+    // sampledHamming
+    //----------------------------------------------------------------------
+    // Returns the average fraction of usable cells that differ between
+    // samples random pairs of the given population.
+    //
+
+    public double sampledHamming(int[][][] population, int samples) {
+        if (population.length < 2 || mask.usableCount == 0) {
+            return 0.0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long differences = 0;
+        for (int s = 0; s < samples; s++) {
+            int[][] a = population[random.nextInt(population.length)];
+            int[][] b = population[random.nextInt(population.length)];
+            for (int c = 0; c < mask.usableCount; c++) {
+                if (a[mask.cellRow[c]][mask.cellCol[c]] != b[mask.cellRow[c]][mask.cellCol[c]]) {
+                    differences++;
+                }
+            }
+        }
+        return (double) differences / ((long) samples * mask.usableCount);
+    }
+}
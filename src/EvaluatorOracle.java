@@ -0,0 +1,485 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	EvaluatorOracle
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Randomized differential checker guarding the fast code paths against the plain reference
+// implementations. Run it after every change to an evaluator, operator or generator:
+//
+//	java EvaluatorOracle [cases]		Exits with status 1 if any property fails
+//	-Doracle.seed=N						Repeats the floors and maps of a failure report
+//
+// Properties checked on random floors (1 to MAX_SIDE cells a side, with and without walls) and
+// random maps, for neighbor radius 1 to MAX_RADIUS:
+//
+//	affinity		Every registered fast path (FAST_PATHS) equals the naive pairwise sum of
+//					MapAffinityCalculator exactly (within EPSILON for fractional weights); a failing map
+//					is shrunk to the fewest stations
+//	incremental		The affinity RegionOptimizer tracks through cached per-cell contributions equals a
+//					full evaluation of its result
+//	operators		Crossovers return null or exactly STATIONS stations; SWAP, FLIP, BLOCK_MOVE and
+//					VariationOperator.flip keep exactly STATIONS stations, SWAP and BLOCK_MOVE also the
+//					count of each type; the original mutate changes exactly one usable cell and, by
+//					design, adds a station when that cell was empty (otherwise the station count is
+//					unchanged); no operator writes an unusable cell or modifies its parents
+//	generator		generateRandomFloorMap places exactly STATIONS stations on usable cells, with the two
+//					station types equally likely and every usable cell equally likely to hold one
+//	codec			GenomeCodec and VersionedFloor diffs reproduce the maps they encode
+//
+// The seed fixes every floor and map the oracle draws itself, so only the affinity and codec cases
+// replay exactly. The operators, the generator and RegionOptimizer's annealing moves draw from
+// ThreadLocalRandom inside the code under test; their failures print the map involved instead, and
+// a rerun with the same seed checks the same floors with fresh parents and moves.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class EvaluatorOracle {
+
+    // An affinity evaluator under test, returning NaN when it does not support the radius
+    interface Evaluator {
+        double evaluate(int[][] map, FloorMask mask, int radius);
+    }
+
+    private final static int MAX_SIDE = 12;				// Largest number of rows or columns of a random floor
+    private final static int MAX_RADIUS = 3;			// Largest neighbor radius checked
+    private final static double EPSILON = 1e-9;			// Tolerance for sums of fractional weights
+    private final static int GENERATOR_MAPS = 2000;		// Maps sampled to check the generator distribution
+    private final static double MAX_Z = 5.0;			// Largest deviation of a generator frequency in standard deviations
+
+    // Fast affinity paths compared with the reference, by name
+    final static Map<String, Evaluator> FAST_PATHS = new LinkedHashMap<>();
+
+    static {
+        FAST_PATHS.put("cellAffinity", (map, mask, radius) -> {
+            NeighborIndex index = mask.neighbors(radius);
+            double affinity = 0.0;
+            for (int c = 0; c < mask.usableCount; c++) {
+                affinity += ParallelGeneticAlgorithm.cellAffinity(map, index, c);
+            }
+            return affinity;
+        });
+        FAST_PATHS.put("calculateAffinity", (map, mask, radius) ->
+                radius == ParallelGeneticAlgorithm.AFFINITY_RADIUS ? ParallelGeneticAlgorithm.calculateAffinity(map, mask) : Double.NaN);
+        FAST_PATHS.put("FloorObjectives", (map, mask, radius) -> {
+            if (radius != ParallelGeneticAlgorithm.AFFINITY_RADIUS) {
+                return Double.NaN;
+            }
+            ParallelGeneticAlgorithm.setJobMask(mask);
+            try {
+                return -FloorObjectives.evaluate(map)[FloorObjectives.AFFINITY];
+            } finally {
+                ParallelGeneticAlgorithm.setJobMask(null);
+            }
+        });
+        FAST_PATHS.put("PopulationBatch", (map, mask, radius) -> {
+            if (radius != ParallelGeneticAlgorithm.AFFINITY_RADIUS) {
+                return Double.NaN;
+            }
+            // Surround the map with other individuals so lanes that mix them up show
+            PopulationBatch batch = new PopulationBatch(mask, 11);
+            int[][] empty = new int[mask.rows][mask.columns];
+            int[][] swapped = new int[mask.rows][mask.columns];
+            for (int i = 0; i < mask.rows; i++) {
+                for (int j = 0; j < mask.columns; j++) {
+                    swapped[i][j] = map[i][j] == 0 ? 0 : 3 - map[i][j];
+                }
+            }
+            for (int n = 0; n < 9; n++) {
+                batch.add(n % 2 == 0 ? empty : swapped);
+            }
+            batch.add(map);
+            return batch.calculateAffinity()[9];
+        });
+        FAST_PATHS.put("MapAffinityCalculator", (map, mask, radius) ->
+                radius == 1 && mask.usableCount == mask.rows * mask.columns ? MapAffinityCalculator.calculateAffinity(map) : Double.NaN);
+    }
+
+    private final Random random;						// Source of the random floors and maps
+    private int checks = 0;								// Properties evaluated
+    private int failures = 0;							// Properties that failed
+
+    public EvaluatorOracle(long seed) {
+        this.random = new Random(seed);
+    }
+
+    //----------------------------------------------------------------------
+    // checkAffinity
+    //----------------------------------------------------------------------
+    // Compares every fast path with the reference on a random floor and
+    // map, shrinking the map of a mismatch.
+    //
+
+    private void checkAffinity() {
+        FloorMask mask = randomMask(1 + random.nextInt(MAX_SIDE), 1 + random.nextInt(MAX_SIDE));
+        int[][] map = randomMap(mask);
+        int radius = 1 + random.nextInt(MAX_RADIUS);
+
+        for (Map.Entry<String, Evaluator> path : FAST_PATHS.entrySet()) {
+            Evaluator evaluator = path.getValue();
+            if (Double.isNaN(evaluator.evaluate(map, mask, radius))) {
+                continue;
+            }
+            checks++;
+            if (!agrees(evaluator, map, mask, radius)) {
+                int[][] small = shrink(map, candidate -> !agrees(evaluator, candidate, mask, radius));
+                fail("affinity", path.getKey() + " at radius " + radius + " gives " + evaluator.evaluate(small, mask, radius)
+                        + ", reference " + MapAffinityCalculator.calculateAffinity(small, mask, radius), small, mask);
+            }
+        }
+    }
+
+    // Whether an evaluator matches the reference on a map
+    private static boolean agrees(Evaluator evaluator, int[][] map, FloorMask mask, int radius) {
+        double expected = MapAffinityCalculator.calculateAffinity(map, mask, radius);
+        double actual = evaluator.evaluate(map, mask, radius);
+        return radius == 1 ? actual == expected : Math.abs(actual - expected) <= EPSILON * Math.max(1.0, Math.abs(expected));
+    }
+
+    //----------------------------------------------------------------------
+    // checkIncremental
+    //----------------------------------------------------------------------
+    // Compares the affinity RegionOptimizer tracks incrementally with a
+    // full evaluation of the layout it returns.
+    //
+
+    private void checkIncremental() {
+        int rows = 2 + random.nextInt(MAX_SIDE - 1);
+        int columns = 2 + random.nextInt(MAX_SIDE - 1);
+        FloorMask mask = randomMask(rows, columns);
+        if (mask.usableCount < 2) {
+            return;
+        }
+        int[][] layout = randomMap(mask);
+        int firstRow = random.nextInt(rows);
+        int firstColumn = random.nextInt(columns);
+        RegionOptimizer optimizer;
+        try {
+            optimizer = new RegionOptimizer(layout, mask, firstRow, firstColumn,
+                    firstRow + random.nextInt(rows - firstRow), firstColumn + random.nextInt(columns - firstColumn));
+        } catch (IllegalArgumentException e) {
+            // Fewer than two usable cells in the region
+            return;
+        }
+        checks++;
+        double[] tracked = new double[1];
+        int[][] best = optimizer.anneal(50 + random.nextInt(500), tracked);
+        double full = ParallelGeneticAlgorithm.calculateAffinity(best, mask);
+        if (Math.abs(tracked[0] - full) > EPSILON * Math.max(1.0, Math.abs(full))) {
+            fail("incremental", "RegionOptimizer tracked " + tracked[0] + ", full evaluation " + full, best, mask);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // checkOperators
+    //----------------------------------------------------------------------
+    // Applies every variation operator, crossover and mutate to random
+    // parents on a random floor with room for STATIONS stations.
+    //
+
+    private void checkOperators() {
+        FloorMask mask = stationMask();
+        ParallelGeneticAlgorithm.setJobMask(mask);
+        try {
+            int[][] parent1 = ParallelGeneticAlgorithm.generateRandomFloorMap();
+            int[][] parent2 = ParallelGeneticAlgorithm.generateRandomFloorMap();
+            int[][] copy1 = ParallelGeneticAlgorithm.copyMap(parent1);
+            int[][] copy2 = ParallelGeneticAlgorithm.copyMap(parent2);
+
+            for (VariationOperator operator : VariationOperator.values()) {
+                checks++;
+                int[][] child = operator.apply(parent1, parent2);
+                String problem = null;
+                if (child == null) {
+                    problem = operator.isCrossover() ? null : "returned null";
+                } else if (!onUsableCells(child, mask)) {
+                    problem = "placed a station on an unusable cell";
+                } else if (stations(child) != ParallelGeneticAlgorithm.STATIONS) {
+                    problem = "returned " + stations(child) + " stations";
+                } else if ((operator == VariationOperator.SWAP || operator == VariationOperator.BLOCK_MOVE)
+                        && !Arrays.equals(typeCounts(child), typeCounts(parent1))) {
+                    problem = "changed the station counts";
+                }
+                if (!Arrays.deepEquals(parent1, copy1) || !Arrays.deepEquals(parent2, copy2)) {
+                    problem = "modified a parent";
+                }
+                if (problem != null) {
+                    fail("operators", operator + " " + problem, child != null ? child : parent1, mask);
+                    return;
+                }
+            }
+
+            checks++;
+            int[][] child = ParallelGeneticAlgorithm.crossover(parent1, parent2);
+            if (child != null && (stations(child) != ParallelGeneticAlgorithm.STATIONS || !onUsableCells(child, mask))) {
+                fail("operators", "crossover returned an invalid child", child, mask);
+            }
+
+            checks++;
+            int[][] flipped = VariationOperator.flip(ParallelGeneticAlgorithm.copyMap(parent1));
+            if (stations(flipped) != ParallelGeneticAlgorithm.STATIONS || changedCells(flipped, parent1) > 2 || !onUsableCells(flipped, mask)) {
+                fail("operators", "flip returned " + stations(flipped) + " stations, changing " + changedCells(flipped, parent1) + " cells", flipped, mask);
+            }
+
+            checks++;
+            int[][] mutated = ParallelGeneticAlgorithm.mutate(ParallelGeneticAlgorithm.copyMap(parent1));
+            int changed = changedCells(mutated, parent1);
+            int added = stations(mutated) - stations(parent1);
+            boolean filledEmpty = false;
+            for (int c = 0; c < mask.usableCount; c++) {
+                int row = mask.cellRow[c];
+                int column = mask.cellCol[c];
+                filledEmpty |= parent1[row][column] == 0 && mutated[row][column] != 0;
+            }
+            if (changed != 1 || !onUsableCells(mutated, mask)) {
+                fail("operators", "mutate changed " + changed + " cells", mutated, mask);
+            } else if (added != (filledEmpty ? 1 : 0)) {
+                fail("operators", "mutate changed the station count by " + added, mutated, mask);
+            }
+        } finally {
+            ParallelGeneticAlgorithm.setJobMask(null);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // checkGenerator
+    //----------------------------------------------------------------------
+    // Samples GENERATOR_MAPS random maps on a random floor and checks the
+    // station count, the cells used, the balance of the two types and how
+    // often each usable cell holds a station.
+    //
+
+    private void checkGenerator() {
+        FloorMask mask = stationMask();
+        ParallelGeneticAlgorithm.setJobMask(mask);
+        try {
+            long[] types = new long[ParallelGeneticAlgorithm.TYPES];
+            int[] occupied = new int[mask.usableCount];
+            for (int n = 0; n < GENERATOR_MAPS; n++) {
+                checks++;
+                int[][] map = ParallelGeneticAlgorithm.generateRandomFloorMap();
+                if (stations(map) != ParallelGeneticAlgorithm.STATIONS || !onUsableCells(map, mask)) {
+                    fail("generator", "generated " + stations(map) + " stations", map, mask);
+                    return;
+                }
+                for (int c = 0; c < mask.usableCount; c++) {
+                    int value = map[mask.cellRow[c]][mask.cellCol[c]];
+                    types[value]++;
+                    if (value != 0) {
+                        occupied[c]++;
+                    }
+                }
+            }
+
+            // Each station is type 1 or 2 with equal probability
+            checks++;
+            long total = types[1] + types[2];
+            double z = (types[1] - total / 2.0) / Math.sqrt(total / 4.0);
+            if (Math.abs(z) > MAX_Z) {
+                fail("generator", "type 1 makes up " + types[1] + " of " + total + " stations (z = " + z + ")", null, mask);
+            }
+
+            // Each usable cell holds a station with probability STATIONS / usable cells
+            double p = (double) ParallelGeneticAlgorithm.STATIONS / mask.usableCount;
+            double deviation = Math.sqrt(GENERATOR_MAPS * p * (1.0 - p));
+            for (int c = 0; c < mask.usableCount; c++) {
+                checks++;
+                double cellZ = deviation == 0.0 ? 0.0 : (occupied[c] - GENERATOR_MAPS * p) / deviation;
+                if (Math.abs(cellZ) > MAX_Z) {
+                    fail("generator", String.format("cell (%d, %d) holds a station in %.1f%% of the maps, expected %.1f%% (z = %.1f)",
+                            mask.cellRow[c], mask.cellCol[c], 100.0 * occupied[c] / GENERATOR_MAPS, 100.0 * p, cellZ), null, mask);
+                    return;
+                }
+            }
+        } finally {
+            ParallelGeneticAlgorithm.setJobMask(null);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // checkCodec
+    //----------------------------------------------------------------------
+    // Round trips a random map through GenomeCodec and through a chain of
+    // VersionedFloor diffs.
+    //
+
+    private void checkCodec(VersionedFloor floor, int[][][] view) {
+        FloorMask mask = randomMask(1 + random.nextInt(MAX_SIDE), 1 + random.nextInt(MAX_SIDE));
+        int[][] map = randomMap(mask);
+
+        checks++;
+        int[][] decoded = GenomeCodec.decode(java.nio.ByteBuffer.wrap(GenomeCodec.encode(map)));
+        if (!Arrays.deepEquals(map, decoded)) {
+            fail("codec", "GenomeCodec did not reproduce the map", map, mask);
+        }
+
+        checks++;
+        FloorDiff diff = floor.publish(map);
+        if (diff.baseVersion == 0) {
+            view[0] = diff.toMap();
+        } else {
+            diff.applyTo(view[0]);
+        }
+        if (!Arrays.deepEquals(map, view[0])) {
+            fail("codec", "VersionedFloor diff from version " + diff.baseVersion + " did not reproduce the map", map, mask);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // shrink
+    //----------------------------------------------------------------------
+    // Empties cells of a failing map one at a time as long as it still
+    // fails, returning the smallest failing map found.
+    //
+
+    private static int[][] shrink(int[][] map, java.util.function.Predicate<int[][]> fails) {
+        int[][] smallest = ParallelGeneticAlgorithm.copyMap(map);
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (int i = 0; i < smallest.length; i++) {
+                for (int j = 0; j < smallest[i].length; j++) {
+                    if (smallest[i][j] == 0) {
+                        continue;
+                    }
+                    int value = smallest[i][j];
+                    smallest[i][j] = 0;
+                    if (fails.test(smallest)) {
+                        shrunk = true;
+                    } else {
+                        smallest[i][j] = value;
+                    }
+                }
+            }
+        }
+        return smallest;
+    }
+
+    // Reports a failed property with the map and floor that show it
+    private void fail(String property, String message, int[][] map, FloorMask mask) {
+        failures++;
+        System.out.println("FAILED " + property + ": " + message);
+        if (map != null) {
+            for (int i = 0; i < map.length; i++) {
+                StringBuilder row = new StringBuilder("  ");
+                for (int j = 0; j < map[i].length; j++) {
+                    row.append(mask.isUsable(i, j) ? (char) ('0' + map[i][j]) : '#').append(' ');
+                }
+                System.out.println(row);
+            }
+        }
+    }
+
+    // Random floor of the given size, fully usable half of the time, otherwise with random walls
+    private FloorMask randomMask(int rows, int columns) {
+        boolean[][] usable = new boolean[rows][columns];
+        boolean walls = random.nextBoolean();
+        for (boolean[] row : usable) {
+            for (int j = 0; j < columns; j++) {
+                row[j] = !walls || random.nextInt(5) != 0;
+            }
+        }
+        return new FloorMask(usable);
+    }
+
+    // Random floor with room for at least STATIONS stations
+    private FloorMask stationMask() {
+        while (true) {
+            int side = 7 + random.nextInt(MAX_SIDE - 6);
+            FloorMask mask = randomMask(side, 7 + random.nextInt(MAX_SIDE - 6));
+            if (mask.usableCount >= ParallelGeneticAlgorithm.STATIONS) {
+                return mask;
+            }
+        }
+    }
+
+    // Random map with any station type on every usable cell
+    private int[][] randomMap(FloorMask mask) {
+        int[][] map = new int[mask.rows][mask.columns];
+        for (int c = 0; c < mask.usableCount; c++) {
+            map[mask.cellRow[c]][mask.cellCol[c]] = random.nextInt(ParallelGeneticAlgorithm.TYPES);
+        }
+        return map;
+    }
+
+    private static int stations(int[][] map) {
+        int count = 0;
+        for (int[] row : map) {
+            for (int value : row) {
+                if (value != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int[] typeCounts(int[][] map) {
+        int[] counts = new int[ParallelGeneticAlgorithm.TYPES];
+        for (int[] row : map) {
+            for (int value : row) {
+                counts[value]++;
+            }
+        }
+        return counts;
+    }
+
+    // Number of cells in which two maps of the same size differ
+    private static int changedCells(int[][] map, int[][] original) {
+        int changed = 0;
+        for (int i = 0; i < map.length; i++) {
+            for (int j = 0; j < map[i].length; j++) {
+                if (map[i][j] != original[i][j]) {
+                    changed++;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // Whether every station of the map is on a usable cell
+    private static boolean onUsableCells(int[][] map, FloorMask mask) {
+        for (int i = 0; i < map.length; i++) {
+            for (int j = 0; j < map[i].length; j++) {
+                if (map[i][j] != 0 && !mask.isUsable(i, j)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Runs every property for the given number of cases and exits with
+    // status 1 if any failed.
+    //
+
+    public static void main(String[] args) {
+        int cases = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = Long.getLong("oracle.seed", System.nanoTime());
+        EvaluatorOracle oracle = new EvaluatorOracle(seed);
+        System.out.println("Checking " + cases + " cases with -Doracle.seed=" + seed);
+
+        VersionedFloor floor = new VersionedFloor(1, 1);
+        int[][][] view = new int[1][][];
+        for (int n = 0; n < cases; n++) {
+            oracle.checkAffinity();
+            oracle.checkCodec(floor, view);
+            if (n % 10 == 0) {
+                oracle.checkIncremental();
+                oracle.checkOperators();
+            }
+        }
+        oracle.checkGenerator();
+
+        System.out.println(oracle.checks + " checks, " + oracle.failures + " failed");
+        if (oracle.failures > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	FloorDiff
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// The cells of a VersionedFloor that changed between two published versions (immutable). A consumer
+// holding version baseVersion of the floor identified by track applies the diff to reach version; a
+// diff with a baseVersion of 0 starts from an empty floor, so it is a full snapshot of the non-empty
+// cells.
+//
+//	cell[n]		Changed cell, numbered row * columns + column
+//	value[n]	Station type of the cell in the new version
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class FloorDiff {
+
+    final int track;				// Floor the diff belongs to
+    final long baseVersion;			// Version the diff applies to
+    final long version;				// Version reached by applying the diff
+    final int rows;					// Number of rows of the floor
+    final int columns;				// Number of columns of the floor
+    final int[] cell;				// Changed cells
+    final int[] value;				// New station type of each changed cell
+
+    FloorDiff(int track, long baseVersion, long version, int rows, int columns, int[] cell, int[] value) {
+        this.track = track;
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.rows = rows;
+        this.columns = columns;
+        this.cell = cell;
+        this.value = value;
+    }
+
+    // Number of changed cells
+    public int size() {
+        return cell.length;
+    }
+
+    //----------------------------------------------------------------------
+    // applyTo
+    //----------------------------------------------------------------------
+    // Writes the changed cells into a map holding baseVersion.
+    //
+
+    public void applyTo(int[][] map) {
+        for (int n = 0; n < cell.length; n++) {
+            map[cell[n] / columns][cell[n] % columns] = value[n];
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // toMap
+    //----------------------------------------------------------------------
+    // Returns the floor at version, for a diff that starts from an empty
+    // floor.
+    //
+
+    public int[][] toMap() {
+        if (baseVersion != 0) {
+            throw new IllegalStateException("Diff from version " + baseVersion + " is not a full snapshot");
+        }
+        int[][] map = new int[rows][columns];
+        applyTo(map);
+        return map;
+    }
+}
@@ -0,0 +1,191 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	FloorMask
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Describes the shape of the factory floor. Cells that are not usable (walls, columns and permanent
+// holes) always hold 0 and are never turned into stations by generation, mutation or crossover,
+// nor are they visited when calculating affinity.
+//
+// The usable cells are listed once in row major order (cellRow[c], cellCol[c]) and their usable
+// neighbors are precomputed into a NeighborIndex, so that affinity loops only walk over usable
+// cells and sparse floors are no slower than dense ones.
+//
+// Masks can be loaded from a text file, where '#' marks an unusable cell and any other character
+// a usable one, or from an image, where dark pixels are unusable.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class FloorMask {
+
+    final int rows;						// Number of rows of the floor
+    final int columns;					// Number of columns of the floor
+    final int usableCount;				// Number of cells that can hold a station
+
+    final int[] cellRow;				// Row of each usable cell
+    final int[] cellCol;				// Column of each usable cell
+    final NeighborIndex adjacent;		// The 8 direct usable neighbors of each usable cell
+
+    private final boolean[][] usable;	// Whether each cell of the floor can hold a station
+    private volatile NeighborIndex wide;	// Most recently requested index of a radius above 1
+
+    public FloorMask(boolean[][] usable) {
+        this.usable = usable;
+        this.rows = usable.length;
+        this.columns = usable[0].length;
+
+        // Count usable cells
+        int cells = 0;
+        for (boolean[] row : usable) {
+            for (boolean cell : row) {
+                if (cell) {
+                    cells++;
+                }
+            }
+        }
+        this.usableCount = cells;
+        this.cellRow = new int[cells];
+        this.cellCol = new int[cells];
+
+        // List the usable cells in row major order
+        int c = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (usable[i][j]) {
+                    cellRow[c] = i;
+                    cellCol[c] = j;
+                    c++;
+                }
+            }
+        }
+        this.adjacent = new NeighborIndex(this, 1);
+    }
+
+    //----------------------------------------------------------------------
+    // neighbors
+    //----------------------------------------------------------------------
+    // Returns the neighbor index of the given radius, building it on the
+    // first request. Radius 1 is always available.
+    //
+
+    public NeighborIndex neighbors(int radius) {
+        if (radius == 1) {
+            return adjacent;
+        }
+        NeighborIndex index = wide;
+        if (index == null || index.radius != radius) {
+            index = new NeighborIndex(this, radius);
+            wide = index;
+        }
+        return index;
+    }
+
+    //----------------------------------------------------------------------
+    // full
+    //----------------------------------------------------------------------
+    // Creates a rectangular mask where every cell is usable.
+    //
+
+    public static FloorMask full(int rows, int columns) {
+        boolean[][] usable = new boolean[rows][columns];
+        for (boolean[] row : usable) {
+            Arrays.fill(row, true);
+        }
+        return new FloorMask(usable);
+    }
+
+    //----------------------------------------------------------------------
+    // load
+    //----------------------------------------------------------------------
+    // Loads a mask from a .png/.gif/.bmp image or from a text file. Every
+    // row of a text file must have the same length.
+    //
+
+    public static FloorMask load(Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".png") || name.endsWith(".gif") || name.endsWith(".bmp")) {
+            return fromImage(path);
+        }
+        return parse(Files.readAllLines(path, StandardCharsets.UTF_8), "Floor mask " + path);
+    }
+
+    //----------------------------------------------------------------------
+    // parse
+    //----------------------------------------------------------------------
+    // Builds a mask from the rows of a text mask, ignoring blank rows. The
+    // source names the mask in error messages.
+    //
+
+    public static FloorMask parse(List<String> rows, String source) throws IOException {
+        List<String> lines = new ArrayList<>(rows);
+        lines.removeIf(String::isBlank);
+        if (lines.isEmpty()) {
+            throw new IOException(source + " is empty");
+        }
+        int columns = lines.get(0).length();
+        boolean[][] usable = new boolean[lines.size()][columns];
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.length() != columns) {
+                throw new IOException(source + " row " + (i + 1) + " has " + line.length() + " cells, expected " + columns);
+            }
+            for (int j = 0; j < columns; j++) {
+                usable[i][j] = line.charAt(j) != '#';
+            }
+        }
+        return new FloorMask(usable);
+    }
+
+    //----------------------------------------------------------------------
+    // fromImage
+    //----------------------------------------------------------------------
+    // Reads one cell per pixel, treating pixels darker than mid grey as
+    // unusable.
+    //
+
+    private static FloorMask fromImage(Path path) throws IOException {
+        BufferedImage image = ImageIO.read(path.toFile());
+        if (image == null) {
+            throw new IOException("Floor mask " + path + " is not a readable image");
+        }
+        boolean[][] usable = new boolean[image.getHeight()][image.getWidth()];
+        for (int i = 0; i < usable.length; i++) {
+            for (int j = 0; j < usable[0].length; j++) {
+                int rgb = image.getRGB(j, i);
+                int luminance = (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+                usable[i][j] = luminance >= 128;
+            }
+        }
+        return new FloorMask(usable);
+    }
+
+    //----------------------------------------------------------------------
+    // isUsable
+    //----------------------------------------------------------------------
+    // Returns true if the given cell lies on the floor and can hold a
+    // station.
+    //
+
+    public boolean isUsable(int row, int column) {
+        return row >= 0 && row < rows && column >= 0 && column < columns && usable[row][column];
+    }
+
+    //----------------------------------------------------------------------
+    // matches
+    //----------------------------------------------------------------------
+    // Returns true if the mask has the same dimensions as the given map.
+    //
+
+    public boolean matches(int[][] map) {
+        return map.length == rows && map[0].length == columns;
+    }
+}
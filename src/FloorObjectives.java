@@ -0,0 +1,92 @@
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	FloorObjectives
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Evaluates every objective used by the multi-objective mode in a single pass over a floor map.
+// All objectives are expressed so that smaller is better (affinity is negated), which is the
+// orientation expected by ParetoSorter.
+//
+//	[AFFINITY]	Negated affinity, identical in value to ParallelGeneticAlgorithm.calculateAffinity
+//	[WALKING]	Sum of Manhattan distances from every station to the center of the floor
+//	[HOLES]		Number of empty usable cells completely enclosed by stations or walls
+//	[HAZARD]	Number of adjacent pairs of hazardous (HAZARDOUS_TYPE) stations
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class FloorObjectives {
+
+    final static int AFFINITY = 0;				// Index of the (negated) affinity objective
+    final static int WALKING = 1;				// Index of the walking distance objective
+    final static int HOLES = 2;					// Index of the enclosed hole count objective
+    final static int HAZARD = 3;				// Index of the hazardous clustering objective
+    final static int COUNT = 4;					// Number of objectives
+    final static int HAZARDOUS_TYPE = 2;		// Station type considered hazardous when clustered
+
+    // Names of each objective used when printing results
+    final static String[] NAMES = { "Affinity", "Walking", "Holes", "Hazard" };
+
+    //----------------------------------------------------------------------
+    // evaluate
+    //----------------------------------------------------------------------
+    // Calculates all objectives of a given int[][] floor map while visiting
+    // each usable cell and its usable neighbors exactly once.
+    //
+
+    public static double[] evaluate(int[][] map) {
+        FloorMask mask = ParallelGeneticAlgorithm.maskFor(map);
+        NeighborIndex adjacent = mask.adjacent;
+        NeighborIndex affinityIndex = mask.neighbors(ParallelGeneticAlgorithm.AFFINITY_RADIUS);
+
+        // Center of the floor used as the reference point for walking distance
+        double centerRow = (mask.rows - 1) / 2.0;
+        double centerCol = (mask.columns - 1) / 2.0;
+
+        double affinity = 0.0;
+        double walking = 0.0;
+        int holes = 0;
+        int hazardPairs = 0;
+
+        // For each usable cell of the floor
+        for (int c = 0; c < mask.usableCount; c++) {
+            int i = mask.cellRow[c];
+            int j = mask.cellCol[c];
+
+            // Set current to map at index [i][j]
+            int current = map[i][j];
+
+            // Same affinity as calculateAffinity, over AFFINITY_RADIUS
+            affinity += ParallelGeneticAlgorithm.cellAffinity(map, affinityIndex, c);
+
+            // Number of usable neighbors holding stations
+            int stationNeighbors = 0;
+
+            // For each usable direct neighbor of the current cell
+            for (int k = adjacent.offsets[c]; k < adjacent.offsets[c + 1]; k++) {
+                int neighbor = map[adjacent.neighborRow[k]][adjacent.neighborCol[k]];
+                if (neighbor != 0) {
+                    stationNeighbors++;
+                }
+                // Each hazardous pair is seen twice, halved below
+                if (current == HAZARDOUS_TYPE && neighbor == HAZARDOUS_TYPE) {
+                    hazardPairs++;
+                }
+            }
+
+            // Stations contribute their distance to the center of the floor
+            if (current != 0) {
+                walking += Math.abs(i - centerRow) + Math.abs(j - centerCol);
+            }
+            // Empty cells with no empty usable neighbor are unreachable holes
+            else if (stationNeighbors == adjacent.neighborCount(c)) {
+                holes++;
+            }
+        }
+
+        double[] objectives = new double[COUNT];
+        objectives[AFFINITY] = -affinity;
+        objectives[WALKING] = walking;
+        objectives[HOLES] = holes;
+        objectives[HAZARD] = hazardPairs / 2;
+        return objectives;
+    }
+}
@@ -0,0 +1,102 @@
+import java.nio.ByteBuffer;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	GenomeCodec
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Compact binary encoding of a floor map. Every cell holds one of TYPES (at most 4) station types,
+// so four cells are packed into each byte:
+//
+//	short rows | short columns | ceil(rows * columns / 4) bytes of 2-bit cells in row major order
+//
+// An 8x8 floor map takes 20 bytes instead of the 64 ints of the int[][] it is decoded into.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class GenomeCodec {
+
+    private final static int BITS = 2;						// Bits used per cell
+    private final static int CELLS_PER_BYTE = 8 / BITS;		// Cells packed into each byte
+    private final static int CELL_MASK = (1 << BITS) - 1;	// Mask of a single cell
+
+    //----------------------------------------------------------------------
+    // encodedSize
+    //----------------------------------------------------------------------
+    // Returns the number of bytes used to encode a rows by columns map.
+    //
+
+    public static int encodedSize(int rows, int columns) {
+        return 4 + (rows * columns + CELLS_PER_BYTE - 1) / CELLS_PER_BYTE;
+    }
+
+    //----------------------------------------------------------------------
+    // encode
+    //----------------------------------------------------------------------
+    // Writes the given floor map at the current position of the buffer.
+    //
+
+    public static void encode(int[][] map, ByteBuffer buffer) {
+        int rows = map.length;
+        int columns = map[0].length;
+        buffer.putShort((short) rows);
+        buffer.putShort((short) columns);
+
+        int packed = 0;
+        int count = 0;
+        for (int[] row : map) {
+            for (int value : row) {
+                if (value < 0 || value > CELL_MASK) {
+                    throw new IllegalArgumentException("Station type " + value + " does not fit in " + BITS + " bits");
+                }
+                packed |= value << (count * BITS);
+                if (++count == CELLS_PER_BYTE) {
+                    buffer.put((byte) packed);
+                    packed = 0;
+                    count = 0;
+                }
+            }
+        }
+        // Flush the last partially filled byte
+        if (count > 0) {
+            buffer.put((byte) packed);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // encode
+    //----------------------------------------------------------------------
+    // Returns the encoding of the given floor map as a new byte array.
+    //
+
+    public static byte[] encode(int[][] map) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(map.length, map[0].length));
+        encode(map, buffer);
+        return buffer.array();
+    }
+
+    //----------------------------------------------------------------------
+    // decode
+    //----------------------------------------------------------------------
+    // Reads a floor map from the current position of the buffer.
+    //
+
+    public static int[][] decode(ByteBuffer buffer) {
+        int rows = buffer.getShort();
+        int columns = buffer.getShort();
+        int[][] map = new int[rows][columns];
+
+        int packed = 0;
+        int count = CELLS_PER_BYTE;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (count == CELLS_PER_BYTE) {
+                    packed = buffer.get() & 0xFF;
+                    count = 0;
+                }
+                map[i][j] = (packed >>> (count * BITS)) & CELL_MASK;
+                count++;
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.Arrays;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	IncrementalAffinity
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Tracks the affinity of one floor map under cell swaps without re-evaluating the whole map (not
+// thread safe, one per worker).
+//
+//	reset		Computes the affinity contribution of every usable cell once (cellAffinity)
+//	|
+//	swap / move	Swap one or more pairs of usable cells in the map. A swap only changes the
+//				contributions of the swapped cells and their neighbours, so the delta is computed
+//				from those and the cached contributions of the untouched area
+//	|
+//	undo		Reverts the last move and restores the cached contributions
+//
+// Used by the annealing solvers (RegionOptimizer, ParallelTempering), whose moves are swaps.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class IncrementalAffinity {
+
+    private final FloorMask mask;			// Floor of the tracked map
+    private final NeighborIndex index;		// Neighbours used by the affinity
+    private final int[][] cellIndex;		// Usable cell number of each position, -1 if unusable
+    private final double[] scores;			// Affinity contribution of each usable cell
+    private final int[] affected;			// Cells whose contribution the last move changed
+    private final double[] before;			// Their contributions before the last move
+    private final int[] stamp;				// Move that last added each cell to affected
+    private final int[] movedA;				// First cell of each pair swapped by the last move
+    private final int[] movedB;				// Second cell of each pair swapped by the last move
+    private int[][] map;					// Map being tracked, changed in place
+    private double affinity;				// Affinity of map
+    private double previousAffinity;		// Affinity before the last move
+    private int count = 0;					// Cells in affected
+    private int moved = 0;					// Pairs in movedA and movedB
+    private int step = 0;					// Number of the current move
+
+    //----------------------------------------------------------------------
+    // IncrementalAffinity
+    //----------------------------------------------------------------------
+    // Creates a tracker for maps of the given floor whose moves swap at
+    // most maxPairs pairs of cells.
+    //
+
+    public IncrementalAffinity(FloorMask mask, int maxPairs) {
+        this.mask = mask;
+        this.index = mask.neighbors(ParallelGeneticAlgorithm.AFFINITY_RADIUS);
+        this.cellIndex = new int[mask.rows][mask.columns];
+        for (int[] row : cellIndex) {
+            Arrays.fill(row, -1);
+        }
+        int most = 0;
+        for (int c = 0; c < mask.usableCount; c++) {
+            cellIndex[mask.cellRow[c]][mask.cellCol[c]] = c;
+            most = Math.max(most, index.offsets[c + 1] - index.offsets[c]);
+        }
+        this.scores = new double[mask.usableCount];
+        this.affected = new int[Math.min(mask.usableCount, 2 * maxPairs * (most + 1))];
+        this.before = new double[affected.length];
+        this.stamp = new int[mask.usableCount];
+        this.movedA = new int[maxPairs];
+        this.movedB = new int[maxPairs];
+    }
+
+    //----------------------------------------------------------------------
+    // reset
+    //----------------------------------------------------------------------
+    // Starts tracking the given map, which later moves change in place.
+    //
+
+    public void reset(int[][] map) {
+        this.map = map;
+        affinity = 0.0;
+        for (int c = 0; c < mask.usableCount; c++) {
+            scores[c] = ParallelGeneticAlgorithm.cellAffinity(map, index, c);
+            affinity += scores[c];
+        }
+        moved = 0;
+        count = 0;
+    }
+
+    //----------------------------------------------------------------------
+    // swap
+    //----------------------------------------------------------------------
+    // Swaps the contents of usable cells a and b and returns the change in
+    // affinity.
+    //
+
+    public double swap(int a, int b) {
+        movedA[0] = a;
+        movedB[0] = b;
+        return move(1);
+    }
+
+    //----------------------------------------------------------------------
+    // move
+    //----------------------------------------------------------------------
+    // Swaps the first pairs pairs of cells set with pair, in order, and
+    // returns the change in affinity.
+    //
+
+    public double move(int pairs) {
+        moved = pairs;
+        step++;
+        count = 0;
+        for (int n = 0; n < pairs; n++) {
+            exchange(movedA[n], movedB[n]);
+        }
+        for (int n = 0; n < pairs; n++) {
+            collect(movedA[n]);
+            collect(movedB[n]);
+        }
+        double delta = 0.0;
+        for (int n = 0; n < count; n++) {
+            int c = affected[n];
+            before[n] = scores[c];
+            scores[c] = ParallelGeneticAlgorithm.cellAffinity(map, index, c);
+            delta += scores[c] - before[n];
+        }
+        previousAffinity = affinity;
+        affinity += delta;
+        return delta;
+    }
+
+    // Sets pair n of the next move
+    public void pair(int n, int a, int b) {
+        movedA[n] = a;
+        movedB[n] = b;
+    }
+
+    //----------------------------------------------------------------------
+    // undo
+    //----------------------------------------------------------------------
+    // Reverts the last move.
+    //
+
+    public void undo() {
+        for (int n = moved - 1; n >= 0; n--) {
+            exchange(movedA[n], movedB[n]);
+        }
+        for (int n = 0; n < count; n++) {
+            scores[affected[n]] = before[n];
+        }
+        affinity = previousAffinity;
+        moved = 0;
+        count = 0;
+    }
+
+    public double affinity() {
+        return affinity;
+    }
+
+    // Usable cell number of a position, -1 if unusable
+    public int cell(int row, int column) {
+        return cellIndex[row][column];
+    }
+
+    // Station type of usable cell c of the tracked map
+    public int value(int c) {
+        return map[mask.cellRow[c]][mask.cellCol[c]];
+    }
+
+    private void exchange(int a, int b) {
+        int value = map[mask.cellRow[a]][mask.cellCol[a]];
+        map[mask.cellRow[a]][mask.cellCol[a]] = map[mask.cellRow[b]][mask.cellCol[b]];
+        map[mask.cellRow[b]][mask.cellCol[b]] = value;
+    }
+
+    // Adds cell c and its neighbours to affected, skipping cells already stamped in this move
+    private void collect(int c) {
+        if (stamp[c] != step) {
+            stamp[c] = step;
+            affected[count++] = c;
+        }
+        for (int k = index.offsets[c]; k < index.offsets[c + 1]; k++) {
+            int neighbor = cellIndex[index.neighborRow[k]][index.neighborCol[k]];
+            if (stamp[neighbor] != step) {
+                stamp[neighbor] = step;
+                affected[count++] = neighbor;
+            }
+        }
+    }
+}
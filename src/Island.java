@@ -0,0 +1,301 @@
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	Island
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// A population of floor maps evolved by a single thread. Each generation breeds one child per
+// member (binary tournament, then a VariationOperator chosen by the island's OperatorSelector) and
+// a child replaces the worst member whenever it has a higher affinity. Elites leave the island and
+// immigrants arrive through a MigrationTransport.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class Island {
+
+    final int size;								// Number of floor maps on the island
+    final int[][][] population;					// Floor maps of the island
+    final double[] affinity;					// Affinity of each floor map
+
+    private final static double LOW_DIVERSITY = 0.1;			// Diversity below which immigrants are injected
+    private final static double RESTART_DIVERSITY = 0.03;		// Diversity below which the island restarts
+    private final static double INJECTION_FRACTION = 0.25;		// Fraction of the population replaced by immigrants
+    private final static int RESPONSE_COOLDOWN = 20;			// Generations immigrants get before the next response
+    private final static double SEEDED_FRACTION = 0.75;			// Fraction of a warm-started population derived from the seed
+    private final static int SEED_PERTURBATION = 4;				// Most SWAP moves applied to each copy of the seed
+
+    final OperatorSelector selector = new OperatorSelector();	// Adaptive choice of operators and mutation rate
+    final DiversityTracker diversity;							// Incremental similarity of the population
+    int injections = 0;											// Times random immigrants were injected
+    int restarts = 0;											// Times the island was restarted
+    private int cooldown = 0;									// Generations left until diversity is checked again
+    long evaluations = 0;										// Affinity evaluations performed by the island
+
+    private int bestIndex;						// Index of the map with the highest affinity
+    private final int[] heap;					// Member indices as a binary min-heap on affinity, the worst first
+    private final int[] heapSlot;				// Position of each member in heap
+
+    public Island(int size) {
+        this(size, null);
+    }
+
+    //----------------------------------------------------------------------
+    // Island
+    //----------------------------------------------------------------------
+    // Creates an island warm-started from an existing layout: the seed
+    // itself, SEEDED_FRACTION of the population as copies of the seed with
+    // up to SEED_PERTURBATION random swaps, and random maps for the rest.
+    // A null seed gives a fully random population. A seed that does not
+    // pass LayoutFile.checkSeed is rejected with IllegalArgumentException.
+    //
+
+    public Island(int size, int[][] seed) {
+        if (seed != null) {
+            try {
+                LayoutFile.checkSeed(seed, ParallelGeneticAlgorithm.currentMask());
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot seed the island: " + e.getMessage(), e);
+            }
+        }
+        this.size = size;
+        this.population = new int[size][][];
+        this.affinity = new double[size];
+        this.heap = new int[size];
+        this.heapSlot = new int[size];
+        this.diversity = new DiversityTracker(ParallelGeneticAlgorithm.currentMask());
+
+        // Generate the starting population
+        int seeded = seed == null ? 0 : Math.max(1, (int) (size * SEEDED_FRACTION));
+        for (int i = 0; i < size; i++) {
+            if (i == 0 && seed != null) {
+                population[i] = ParallelGeneticAlgorithm.copyMap(seed);
+            } else if (i < seeded) {
+                int[][] map = seed;
+                for (int moves = ThreadLocalRandom.current().nextInt(SEED_PERTURBATION) + 1; moves > 0; moves--) {
+                    map = VariationOperator.SWAP.apply(map, null);
+                }
+                population[i] = map;
+            } else {
+                population[i] = ParallelGeneticAlgorithm.generateRandomFloorMap();
+            }
+            affinity[i] = evaluate(population[i]);
+            diversity.add(population[i]);
+        }
+        buildHeap();
+        findBest();
+    }
+
+    //----------------------------------------------------------------------
+    // evolve
+    //----------------------------------------------------------------------
+    // Runs one generation of the island. Returns true if the best affinity
+    // improved.
+    //
+
+    public boolean evolve() {
+        double previousBest = affinity[bestIndex];
+        for (int n = 0; n < size; n++) {
+            int a = tournament();
+            int b = tournament();
+            double parentAffinity = Math.max(affinity[a], affinity[b]);
+
+            // Create and evaluate the child with the operator that currently pays off best
+            long start = System.nanoTime();
+            VariationOperator operator = selector.select();
+            int[][] child = operator.apply(population[a], population[b]);
+            boolean mutated = false;
+            if (child != null && operator.isCrossover() && selector.shouldMutate()) {
+                child = VariationOperator.flip(child);
+                mutated = true;
+            }
+            double childAffinity = child != null ? evaluate(child) : Double.NEGATIVE_INFINITY;
+            selector.reward(operator, childAffinity - parentAffinity, System.nanoTime() - start);
+            if (mutated) {
+                selector.mutated(childAffinity > parentAffinity);
+            }
+
+            if (child != null) {
+                replaceWorst(child, childAffinity);
+            }
+        }
+        maintainDiversity();
+        return affinity[bestIndex] > previousBest;
+    }
+
+    //----------------------------------------------------------------------
+    // accept
+    //----------------------------------------------------------------------
+    // Lets an immigrant from another island replace the worst member if it
+    // has a higher affinity.
+    //
+
+    public void accept(int[][] immigrant) {
+        replaceWorst(immigrant, evaluate(immigrant));
+    }
+
+    //----------------------------------------------------------------------
+    // best
+    //----------------------------------------------------------------------
+    // Returns the map with the highest affinity on the island.
+    //
+
+    public int[][] best() {
+        return population[bestIndex];
+    }
+
+    //----------------------------------------------------------------------
+    // bestAffinity
+    //----------------------------------------------------------------------
+    // Returns the highest affinity on the island.
+    //
+
+    public double bestAffinity() {
+        return affinity[bestIndex];
+    }
+
+    //----------------------------------------------------------------------
+    // maintainDiversity
+    //----------------------------------------------------------------------
+    // Injects random immigrants or restarts the island if the population
+    // has converged.
+    //
+
+    private void maintainDiversity() {
+        if (cooldown > 0) {
+            cooldown--;
+            return;
+        }
+        double current = diversity.diversity();
+        if (current >= LOW_DIVERSITY) {
+            return;
+        }
+        cooldown = RESPONSE_COOLDOWN;
+        int elite = bestIndex;
+        if (current < RESTART_DIVERSITY) {
+            // Regenerate every map except the best one
+            restarts++;
+            for (int i = 0; i < size; i++) {
+                if (i != elite) {
+                    int[][] map = ParallelGeneticAlgorithm.generateRandomFloorMap();
+                    replace(i, map, evaluate(map));
+                }
+            }
+        } else {
+            // Replace the worst maps with random immigrants, choosing them all first so that an
+            // immigrant that is now the worst map is not overwritten by the next one
+            injections++;
+            int count = Math.max(1, (int) (size * INJECTION_FRACTION));
+            int[] worst = IntStream.range(0, size).boxed()
+                    .sorted(Comparator.comparingDouble(i -> affinity[i]))
+                    .limit(count).mapToInt(Integer::intValue).toArray();
+            for (int index : worst) {
+                int[][] map = ParallelGeneticAlgorithm.generateRandomFloorMap();
+                replace(index, map, evaluate(map));
+            }
+        }
+    }
+
+    // Calculates the affinity of a map, counting the evaluation
+    private double evaluate(int[][] map) {
+        evaluations++;
+        return ParallelGeneticAlgorithm.calculateAffinity(map);
+    }
+
+    // Replaces the worst member with the given map if the map is better
+    private void replaceWorst(int[][] map, double mapAffinity) {
+        if (mapAffinity <= affinity[heap[0]]) {
+            return;
+        }
+        replace(heap[0], map, mapAffinity);
+    }
+
+    // Replaces the member at index, keeping the diversity counts, the heap and the best member up
+    // to date in O(log size)
+    private void replace(int index, int[][] map, double mapAffinity) {
+        diversity.remove(population[index]);
+        diversity.add(map);
+        population[index] = map;
+        double previous = affinity[index];
+        affinity[index] = mapAffinity;
+        if (mapAffinity < previous) {
+            siftUp(heapSlot[index]);
+        } else {
+            siftDown(heapSlot[index]);
+        }
+        if (mapAffinity > affinity[bestIndex]) {
+            bestIndex = index;
+        } else if (index == bestIndex && mapAffinity < previous) {
+            findBest();
+        }
+    }
+
+    // Binary tournament selection on affinity
+    private int tournament() {
+        int a = ThreadLocalRandom.current().nextInt(size);
+        int b = ThreadLocalRandom.current().nextInt(size);
+        return affinity[a] >= affinity[b] ? a : b;
+    }
+
+    // Finds the best member of the island
+    private void findBest() {
+        bestIndex = 0;
+        for (int i = 1; i < size; i++) {
+            if (affinity[i] > affinity[bestIndex]) {
+                bestIndex = i;
+            }
+        }
+    }
+
+    // Orders every member into the heap
+    private void buildHeap() {
+        for (int i = 0; i < size; i++) {
+            heap[i] = i;
+            heapSlot[i] = i;
+        }
+        for (int slot = size / 2 - 1; slot >= 0; slot--) {
+            siftDown(slot);
+        }
+    }
+
+    // Moves the member at slot towards the root while it is worse than its parent
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (affinity[heap[slot]] >= affinity[heap[parent]]) {
+                return;
+            }
+            swapSlots(slot, parent);
+            slot = parent;
+        }
+    }
+
+    // Moves the member at slot towards the leaves while a child is worse
+    private void siftDown(int slot) {
+        while (true) {
+            int worst = slot;
+            int left = 2 * slot + 1;
+            if (left < size && affinity[heap[left]] < affinity[heap[worst]]) {
+                worst = left;
+            }
+            if (left + 1 < size && affinity[heap[left + 1]] < affinity[heap[worst]]) {
+                worst = left + 1;
+            }
+            if (worst == slot) {
+                return;
+            }
+            swapSlots(slot, worst);
+            slot = worst;
+        }
+    }
+
+    private void swapSlots(int a, int b) {
+        int member = heap[a];
+        heap[a] = heap[b];
+        heap[b] = member;
+        heapSlot[heap[a]] = a;
+        heapSlot[heap[b]] = b;
+    }
+}
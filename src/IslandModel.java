@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	IslandModel
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Runs one Island per worker thread of this JVM, laid out by SchedulerConfig.
+//
+//	Each worker creates its own island, so the population is allocated and first touched by the
+//	thread (and therefore the NUMA node) that evolves it
+//	|
+//	Every MIGRATION_INTERVAL generations the island exchanges its best map with a partner
+//	through its LocalMigrationTransport
+//	-Usually a worker of the same node (one PairedExchanger per node)
+//	-Every CROSS_NODE_EVERY migrations, any worker (one PairedExchanger for all workers)
+//	-Immigrants are copied by the receiving thread, keeping the population node local
+//	|
+//	Repeat for the given number of generations and report the global best map
+//
+// The generation and migration loop is IslandNode.evolve, the same one that islands in separate
+// JVMs run over a SocketMigrationTransport, so both transports drive islands identically.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class IslandModel {
+
+    private final static int ISLAND_SIZE = 64;			// Number of floor maps on each island
+    private final static int GENERATIONS = 500;			// Generations each island runs by default
+    private final static int CROSS_NODE_EVERY = 5;		// Every how many migrations cross node boundaries
+
+    private final SchedulerConfig config;				// Worker count and NUMA layout
+    private final PairedExchanger[] nodeExchangers;		// Intra-node migration, one per node
+    private final PairedExchanger globalExchanger;		// Migration between any two workers
+    private int[][] seed;								// Layout every island is warm-started from, or null
+
+    public IslandModel(SchedulerConfig config) {
+        this.config = config;
+        this.nodeExchangers = new PairedExchanger[config.nodes];
+        for (int node = 0; node < config.nodes; node++) {
+            nodeExchangers[node] = new PairedExchanger(config.workersOf(node).length);
+        }
+        this.globalExchanger = new PairedExchanger(config.workers);
+    }
+
+    //----------------------------------------------------------------------
+    // setSeed
+    //----------------------------------------------------------------------
+    // Warm-starts every island of the following runs from the given layout
+    // instead of random maps (null for random maps again). The layout must
+    // pass LayoutFile.checkSeed for the current floor mask.
+    //
+
+    public void setSeed(int[][] layout) {
+        if (layout != null) {
+            try {
+                LayoutFile.checkSeed(layout, ParallelGeneticAlgorithm.currentMask());
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot seed the islands: " + e.getMessage(), e);
+            }
+        }
+        this.seed = layout;
+    }
+
+    //----------------------------------------------------------------------
+    // run
+    //----------------------------------------------------------------------
+    // Evolves one island per worker for the given number of generations
+    // and returns the statistics of the run, including the global best map
+    // and when targetAffinity was first reached.
+    //
+
+    public RunStats run(int generations, double targetAffinity) throws InterruptedException {
+        RunStats stats = new RunStats(config.workers, targetAffinity);
+        Thread[] threads = new Thread[config.workers];
+        for (int worker = 0; worker < config.workers; worker++) {
+            int id = worker;
+            threads[worker] = new Thread(() -> {
+                try {
+                    evolve(id, generations, stats);
+                } catch (InterruptedException | IOException e) {
+                    e.printStackTrace();
+                }
+            }, "Island " + (worker + 1));
+            threads[worker].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        stats.finish();
+        return stats;
+    }
+
+    //----------------------------------------------------------------------
+    // evolve
+    //----------------------------------------------------------------------
+    // Runs on the worker thread, which creates and evolves its own island.
+    //
+
+    private void evolve(int worker, int generations, RunStats stats) throws InterruptedException, IOException {
+        int node = config.nodeOf(worker);
+        Island island = new Island(ISLAND_SIZE, seed);
+        LocalMigrationTransport transport = new LocalMigrationTransport(nodeExchangers[node], indexWithinNode(worker, node),
+                config.nodes > 1 ? globalExchanger : null, worker, CROSS_NODE_EVERY, stats);
+
+        IslandNode.evolve(island, transport, generations, null, worker + 1);
+        stats.reportBest(island.best(), island.bestAffinity());
+        stats.add(island.evaluations, transport.waitNanos());
+    }
+
+    // Position of the worker among the workers of its node
+    private int indexWithinNode(int worker, int node) {
+        int[] members = config.workersOf(node);
+        for (int i = 0; i < members.length; i++) {
+            if (members[i] == worker) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Worker " + worker + " is not on node " + node);
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Runs the island model with the detected scheduler configuration. An
+    // optional argument gives the number of generations, and the islands
+    // are warm-started from the layout file named by -Dlayout if it is set.
+    //
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        SchedulerConfig config = SchedulerConfig.current();
+        System.out.println(config + "\n");
+
+        int generations = args.length > 0 ? Integer.parseInt(args[0]) : GENERATIONS;
+        IslandModel model = new IslandModel(config);
+        String layout = System.getProperty("layout");
+        if (layout != null) {
+            int[][] seed = LayoutFile.load(Paths.get(layout));
+            if (!ParallelGeneticAlgorithm.floorMask.matches(seed)) {
+                // Without a matching floor mask the whole layout is the floor
+                ParallelGeneticAlgorithm.floorMask = FloorMask.full(seed.length, seed[0].length);
+            }
+            LayoutFile.checkSeed(seed, ParallelGeneticAlgorithm.floorMask);
+            System.out.println("Warm start from " + layout + " with affinity " + ParallelGeneticAlgorithm.calculateAffinity(seed) + "\n");
+            model.setSeed(seed);
+        }
+        RunStats result = model.run(generations, Double.POSITIVE_INFINITY);
+
+        System.out.println("Global best affinity: " + result.bestAffinity() + " - Evaluations/s: " + (long) result.evaluationsPerSecond());
+        ParallelGeneticAlgorithm.printArray(result.bestMap());
+    }
+}
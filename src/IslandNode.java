@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	IslandNode
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Runs a single Island in its own JVM, exchanging elite floor maps with the islands of other JVMs
+// through a MigrationCoordinator (see there for how to launch several islands on one machine).
+//
+//	Evolve the island for MIGRATION_INTERVAL generations
+//	|
+//	Offer the best map and wait up to MIGRATION_TIMEOUT for an immigrant
+//	-If one arrives, let it replace the worst map
+//	-Report improvements of the best map to the coordinator
+//	|
+//	Repeat until GENERATIONS or the coordinator sends STOP
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class IslandNode {
+
+    private final static int ISLAND_SIZE = 64;					// Number of floor maps on the island
+    private final static int GENERATIONS = 1000;				// Generations to run unless stopped earlier
+    private final static int MIGRATION_INTERVAL = 10;			// Generations between migrations
+    private final static long MIGRATION_TIMEOUT = 200;			// Milliseconds to wait for an exchange partner
+
+    //----------------------------------------------------------------------
+    // evolve
+    //----------------------------------------------------------------------
+    // Evolves the given island, migrating elites through the transport,
+    // until the generations run out or the transport is stopped. The best
+    // map of each generation is streamed to results unless it is null.
+    //
+
+    public static void evolve(Island island, MigrationTransport transport, int generations, ResultWriter results, int islandId)
+            throws InterruptedException, IOException {
+        double reported = Double.NEGATIVE_INFINITY;
+        for (int generation = 1; generation <= generations && !transport.isStopped(); generation++) {
+            island.evolve();
+            if (results != null) {
+                results.write(generation, islandId, island.bestAffinity(), island.best());
+            }
+
+            if (generation % MIGRATION_INTERVAL == 0) {
+                try {
+                    island.accept(transport.exchange(island.best(), MIGRATION_TIMEOUT, TimeUnit.MILLISECONDS));
+                } catch (TimeoutException e) {
+                    // No partner arrived in time, keep evolving on our own
+                }
+            }
+            if (island.bestAffinity() > reported) {
+                reported = island.bestAffinity();
+                transport.reportBest(island.best(), reported);
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Arguments: coordinator host, port, island id, optional generations.
+    // The best map of each generation is streamed to -Dresults.file.
+    //
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.out.println("Usage: java IslandNode <host> <port> <islandId> [generations]");
+            return;
+        }
+        int islandId = Integer.parseInt(args[2]);
+        int generations = args.length > 3 ? Integer.parseInt(args[3]) : GENERATIONS;
+
+        try (MigrationTransport transport = new SocketMigrationTransport(args[0], Integer.parseInt(args[1]), islandId);
+                ResultWriter results = ResultWriter.fromProperty()) {
+            Island island = new Island(ISLAND_SIZE);
+            evolve(island, transport, generations, results, islandId);
+            System.out.println("Island " + islandId + " : Best Affinity: " + island.bestAffinity());
+            System.out.println("Island " + islandId + " : Operators: " + island.selector);
+            System.out.println("Island " + islandId + " : Diversity: " + island.diversity.diversity()
+                    + " - Sampled Hamming: " + island.diversity.sampledHamming(island.population, 32)
+                    + " - Injections: " + island.injections + " - Restarts: " + island.restarts);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	LayoutFile
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Reads and writes a single floor map, used to warm-start the solvers from an existing layout.
+//
+//	Text file		One row of the floor per line, the station type (0 empty, 1, 2) of every cell,
+//					either separated by whitespace (as printed by printArray) or written together
+//	Result file		A file written by ResultWriter, the map with the highest affinity is used
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class LayoutFile {
+
+    //----------------------------------------------------------------------
+    // load
+    //----------------------------------------------------------------------
+    // Loads the layout stored in the given text or result file.
+    //
+
+    public static int[][] load(Path path) throws IOException {
+        if (isResultFile(path)) {
+            ResultReader.Record best = null;
+            try (ResultReader reader = new ResultReader(path)) {
+                for (ResultReader.Record record = reader.next(); record != null; record = reader.next()) {
+                    if (best == null || record.affinity > best.affinity) {
+                        best = record;
+                    }
+                }
+            }
+            if (best == null) {
+                throw new IOException("Result file " + path + " holds no maps");
+            }
+            return best.map;
+        }
+
+        List<int[]> rows = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String[] cells = trimmed.contains(" ") || trimmed.contains("\t") ? trimmed.split("\\s+") : trimmed.split("");
+            int[] row = new int[cells.length];
+            for (int j = 0; j < cells.length; j++) {
+                if (cells[j].length() != 1 || cells[j].charAt(0) < '0' || cells[j].charAt(0) - '0' >= ParallelGeneticAlgorithm.TYPES) {
+                    throw new IOException("Layout " + path + " row " + (rows.size() + 1) + " has an invalid cell '" + cells[j] + "'");
+                }
+                row[j] = cells[j].charAt(0) - '0';
+            }
+            if (!rows.isEmpty() && row.length != rows.get(0).length) {
+                throw new IOException("Layout " + path + " row " + (rows.size() + 1) + " has " + row.length + " cells, expected " + rows.get(0).length);
+            }
+            rows.add(row);
+        }
+        if (rows.isEmpty()) {
+            throw new IOException("Layout " + path + " is empty");
+        }
+        return rows.toArray(new int[0][]);
+    }
+
+    //----------------------------------------------------------------------
+    // save
+    //----------------------------------------------------------------------
+    // Writes a layout as a text file in the format printed by printArray.
+    //
+
+    public static void save(Path path, int[][] map) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            for (int[] row : map) {
+                StringBuilder line = new StringBuilder();
+                for (int value : row) {
+                    line.append(value).append(' ');
+                }
+                out.println(line.toString().trim());
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // fit
+    //----------------------------------------------------------------------
+    // Checks that a layout fits the floor mask: same size and no station
+    // on an unusable cell.
+    //
+
+    public static void fit(int[][] map, FloorMask mask) throws IOException {
+        if (!mask.matches(map)) {
+            throw new IOException("Layout is " + map.length + "x" + map[0].length + ", the floor is " + mask.rows + "x" + mask.columns);
+        }
+        for (int i = 0; i < mask.rows; i++) {
+            for (int j = 0; j < mask.columns; j++) {
+                if (map[i][j] != 0 && !mask.isUsable(i, j)) {
+                    throw new IOException("Layout has a station on unusable cell " + i + "," + j);
+                }
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // checkSeed
+    //----------------------------------------------------------------------
+    // Checks that a layout can warm-start a population: it fits the floor
+    // mask and has exactly STATIONS stations, as otherwise its copies could
+    // never cross over with the random maps of the population.
+    //
+
+    public static void checkSeed(int[][] map, FloorMask mask) throws IOException {
+        fit(map, mask);
+        int stations = 0;
+        for (int[] row : map) {
+            for (int value : row) {
+                if (value != 0) {
+                    stations++;
+                }
+            }
+        }
+        if (stations != ParallelGeneticAlgorithm.STATIONS) {
+            throw new IOException("Layout has " + stations + " stations, a seed needs exactly " + ParallelGeneticAlgorithm.STATIONS);
+        }
+    }
+
+    // Whether the file starts with the ResultWriter header
+    private static boolean isResultFile(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path); DataInputStream data = new DataInputStream(in)) {
+            return Files.size(path) >= 4 && data.readInt() == ResultWriter.MAGIC;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	LocalMigrationTransport
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// MigrationTransport for islands running as threads of the same JVM, one instance per island. The
+// instances of one IslandModel share its PairedExchangers, and each exchange is the island's next
+// migration round:
+//
+//	Usually the round is played with the workers of the island's NUMA node (nodeExchanger)
+//	|
+//	Every crossNodeEvery rounds it is played with all workers (globalExchanger), if there is more
+//	than one node
+//	|
+//	A round without a partner (odd count, late or dead partner) ends in a TimeoutException, like
+//	Exchanger.exchange
+//
+// The immigrant is copied by the receiving thread, keeping the population node local. Reported
+// best maps go to the RunStats of the run, and the time spent in exchanges is counted so the
+// island model can report it.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class LocalMigrationTransport implements MigrationTransport {
+
+    private final PairedExchanger nodeExchanger;		// Migration among the workers of the island's node
+    private final int nodeIndex;						// Position of the island among the workers of its node
+    private final PairedExchanger globalExchanger;		// Migration among all workers, null with a single node
+    private final int worker;							// Position of the island among all workers
+    private final int crossNodeEvery;					// Every how many rounds cross node boundaries
+    private final RunStats stats;						// Receives the best maps of the island
+    private int round = 0;								// Migration rounds played so far
+    private long waitNanos = 0;							// Time spent in exchanges
+
+    public LocalMigrationTransport(PairedExchanger nodeExchanger, int nodeIndex, PairedExchanger globalExchanger, int worker,
+            int crossNodeEvery, RunStats stats) {
+        this.nodeExchanger = nodeExchanger;
+        this.nodeIndex = nodeIndex;
+        this.globalExchanger = globalExchanger;
+        this.worker = worker;
+        this.crossNodeEvery = crossNodeEvery;
+        this.stats = stats;
+    }
+
+    @Override
+    public int[][] exchange(int[][] map, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        round++;
+        long start = System.nanoTime();
+        int[][] immigrant;
+        try {
+            // Cross node boundaries only every crossNodeEvery rounds
+            if (globalExchanger != null && round % crossNodeEvery == 0) {
+                immigrant = globalExchanger.exchange(worker, round / crossNodeEvery, map, timeout, unit);
+            } else {
+                immigrant = nodeExchanger.exchange(nodeIndex, round, map, timeout, unit);
+            }
+        } finally {
+            waitNanos += System.nanoTime() - start;
+        }
+        if (immigrant == null) {
+            throw new TimeoutException("No migration partner in round " + round);
+        }
+        return ParallelGeneticAlgorithm.copyMap(immigrant);
+    }
+
+    @Override
+    public void reportBest(int[][] map, double affinity) {
+        stats.reportBest(map, affinity);
+    }
+
+    // Time the island spent in exchanges, in nanoseconds
+    public long waitNanos() {
+        return waitNanos;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
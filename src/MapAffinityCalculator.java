@@ -6,9 +6,9 @@ public class MapAffinityCalculator {
 
         double affinity = 0.0;
 
-        // Define the weights for different scenarios
-        double weightSameAdjacent = -0.5;  		// Less affinity for two of the same number next to each other
-        double weightDifferentAdjacent = 2;		// More affinity for a 1 closer to a 2
+        // Weights shared with ParallelGeneticAlgorithm so the two can never disagree
+        double weightSameAdjacent = ParallelGeneticAlgorithm.SAME_ADJACENT_WEIGHT;  		// Less affinity for two of the same number next to each other
+        double weightDifferentAdjacent = ParallelGeneticAlgorithm.DIFFERENT_ADJACENT_WEIGHT;	// More affinity for a 1 closer to a 2
 
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
@@ -59,6 +59,33 @@ public class MapAffinityCalculator {
         return affinity;
     }
 
+    // Reference affinity over a floor mask and a neighbor radius, written as a naive pairwise sum
+    // that shares no structure with the fast paths: every ordered pair of distinct usable cells at
+    // Chebyshev distance d <= radius adds, with a weight of 1 / d, one term for holding the same
+    // value and one for a 1 paired with a 2
+    public static double calculateAffinity(int[][] map, FloorMask mask, int radius) {
+        int rows = map.length;
+        int cols = map[0].length;
+        double affinity = 0.0;
+
+        for (int a = 0; a < rows * cols; a++) {
+            for (int b = 0; b < rows * cols; b++) {
+                int ai = a / cols;
+                int aj = a % cols;
+                int bi = b / cols;
+                int bj = b % cols;
+                int distance = Math.max(Math.abs(ai - bi), Math.abs(aj - bj));
+                if (a == b || distance > radius || !mask.isUsable(ai, aj) || !mask.isUsable(bi, bj)) {
+                    continue;
+                }
+                double same = map[ai][aj] == map[bi][bj] ? 1.0 : 0.0;
+                double oneTwo = map[ai][aj] == 1 && map[bi][bj] == 2 ? 1.0 : 0.0;
+                affinity += (ParallelGeneticAlgorithm.SAME_ADJACENT_WEIGHT * same + ParallelGeneticAlgorithm.DIFFERENT_ADJACENT_WEIGHT * oneTwo) / distance;
+            }
+        }
+        return affinity;
+    }
+
     public static void main(String[] args) {
         int[][] map = {
             {0, 1, 2, 2, 0},
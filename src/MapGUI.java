@@ -2,6 +2,8 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -10,6 +12,10 @@ public class MapGUI extends JFrame implements ActionListener {
     private int[][] mapData;				// 2-dimensional integer array depicting a map layout
     private int currentIndex = 0;			// Current index within the pool of map outputs
     private static final int SLEEP = 500;	// Delay between map drawings in milliseconds
+    private static final int CELL_SIZE = 40;	// Size of each cell in pixels
+    private static final int BORDER_WIDTH = 16;	// Border width in pixels
+    private final Map<Integer, int[][]> tracks = new HashMap<>();	// Latest map of every VersionedFloor, see applyDiff
+    private final Map<Integer, Long> versions = new HashMap<>();	// Version of each map in tracks
 
 
     public MapGUI(int[][] mapData) {
@@ -20,22 +26,26 @@ public class MapGUI extends JFrame implements ActionListener {
 
         int numRows = mapData.length;
         int numCols = mapData[0].length;
-        int cellSize = 40; // Size of each cell
-        int borderWidth = 16; // Border width
 
         // Calculate the width and height of the map area
-        int mapWidth = numCols * cellSize;
-        int mapHeight = numRows * cellSize;
+        int mapWidth = numCols * CELL_SIZE;
+        int mapHeight = numRows * CELL_SIZE;
 
         // Calculate the JFrame dimensions to include the map and border
-        int width = mapWidth + 8 * borderWidth;
-        int height = mapHeight + 8 * borderWidth;
+        int width = mapWidth + 8 * BORDER_WIDTH;
+        int height = mapHeight + 8 * BORDER_WIDTH;
 
         setSize(width, height);
         setLocationRelativeTo(null); // Centers GUI on screen
         setVisible(true);
     }
 
+    public MapGUI(FloorDiff snapshot) {
+        this(snapshot.toMap());
+        tracks.put(snapshot.track, mapData);
+        versions.put(snapshot.track, snapshot.version);
+    }
+
     @Override
     public void actionPerformed(ActionEvent e) {
         if (currentIndex < mapData.length) {
@@ -48,15 +58,15 @@ public class MapGUI extends JFrame implements ActionListener {
     @Override
     public void paint(Graphics g) {
         super.paint(g);						// Paints the container
-        int cellSize = 40;					// Size of each cell
         int numRows = mapData.length;		// Number of rows within the 2-dimensional integer array
         int numCols = mapData[0].length;	// Number of columns within the 2-dimensional integer array
-        int borderWidth = 16;				// Border width
 
         // Calculate the starting coordinates to center the map
-        int startX = borderWidth + (getWidth() - numCols * cellSize - 2 * borderWidth) / 2;		// Starting centered x-coordinate of screen
-        int startY = borderWidth + (getHeight() - numRows * cellSize - 2 * borderWidth) / 2;	// Starting centered y-coordinate of screen
-        int circleSize = cellSize / 2; 															// Size of the blue circles depicting type2-stations
+        int startX = BORDER_WIDTH + (getWidth() - numCols * CELL_SIZE - 2 * BORDER_WIDTH) / 2;		// Starting centered x-coordinate of screen
+        int startY = BORDER_WIDTH + (getHeight() - numRows * CELL_SIZE - 2 * BORDER_WIDTH) / 2;	// Starting centered y-coordinate of screen
+        int circleSize = CELL_SIZE / 2; 															// Size of the blue circles depicting type2-stations
+        FloorMask mask = ParallelGeneticAlgorithm.maskFor(mapData);								// Shape of the floor, walls are drawn grey
+        Rectangle clip = g.getClipBounds();																// Area to repaint, only changed cells after applyDiff
 
         // For each row within the array
         for (int row = 0; row < numRows; row++) {
@@ -64,14 +74,24 @@ public class MapGUI extends JFrame implements ActionListener {
         	// For each column within each row
             for (int col = 0; col < numCols; col++) {
             	
+            	// Skip cells outside the area being repainted
+            	if (clip != null && !clip.intersects(startX + col * CELL_SIZE, startY + row * CELL_SIZE, CELL_SIZE + 1, CELL_SIZE + 1)) {
+            		continue;
+            	}
+            	
             	// Set cell value to current row and column station type value
                 int cellValue = mapData[row][col];
                 
                 // Set the default color for cells to white
                 Color cellColor = Color.WHITE;
 
+                // If cell is not part of the floor (Grey Cell)
+                if (!mask.isUsable(row, col)) {
+                    g.setColor(Color.GRAY);
+                    g.fillRect(startX + col * CELL_SIZE, startY + row * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+                    
                 // If cell is type1 (Red Square)
-                if (cellValue == 1) {                	
+                } else if (cellValue == 1) {                	
                 	// Turn cell color to red
                     cellColor = Color.RED;
                     
@@ -79,8 +99,8 @@ public class MapGUI extends JFrame implements ActionListener {
                     g.setColor(cellColor);
                     
                     // Adjust square position to center of cell
-                    int squareX = startX + col * cellSize + cellSize / 2 - circleSize / 2;
-                    int squareY = startY + row * cellSize + cellSize / 2 - circleSize / 2;
+                    int squareX = startX + col * CELL_SIZE + CELL_SIZE / 2 - circleSize / 2;
+                    int squareY = startY + row * CELL_SIZE + CELL_SIZE / 2 - circleSize / 2;
                     
                     // Fill the graphics rectangle
                     g.fillRect(squareX, squareY, circleSize, circleSize);
@@ -89,15 +109,15 @@ public class MapGUI extends JFrame implements ActionListener {
                 	// Set background to white
                     cellColor = Color.WHITE;
                     g.setColor(cellColor);
-                    g.fillRect(startX + col * cellSize, startY + row * cellSize, cellSize, cellSize);
+                    g.fillRect(startX + col * CELL_SIZE, startY + row * CELL_SIZE, CELL_SIZE, CELL_SIZE);
                     
                     // Set circle color
                     cellColor = Color.BLUE;
                     g.setColor(cellColor);
                     
                     // Set circle position to center of cell
-                    int circleX = startX + col * cellSize + cellSize / 2 - circleSize / 2;
-                    int circleY = startY + row * cellSize + cellSize / 2 - circleSize / 2;
+                    int circleX = startX + col * CELL_SIZE + CELL_SIZE / 2 - circleSize / 2;
+                    int circleY = startY + row * CELL_SIZE + CELL_SIZE / 2 - circleSize / 2;
                     
                     // Fill the graphics circle
                     g.fillOval(circleX, circleY, circleSize, circleSize);
@@ -106,7 +126,7 @@ public class MapGUI extends JFrame implements ActionListener {
                 g.setColor(Color.BLACK);
                 
                 // Draw border rectangles
-                g.drawRect(startX + col * cellSize, startY + row * cellSize, cellSize, cellSize);
+                g.drawRect(startX + col * CELL_SIZE, startY + row * CELL_SIZE, CELL_SIZE, CELL_SIZE);
             }
         }
     }
@@ -120,6 +140,46 @@ public class MapGUI extends JFrame implements ActionListener {
         repaint();
     }
     
+    //----------------------------------------------------------------------
+    // applyDiff
+    //----------------------------------------------------------------------
+    // Applies the changes of a VersionedFloor on the event dispatch thread.
+    // A copy of every floor (track) is kept; if the diff belongs to the
+    // displayed floor only the changed cells are repainted, otherwise its
+    // floor is displayed instead. A diff that does not follow the version
+    // held must be a full snapshot, which replaces the floor's copy.
+    //
+
+    public void applyDiff(FloorDiff diff) {
+        SwingUtilities.invokeLater(() -> {
+            int[][] map = tracks.get(diff.track);
+            long version = versions.getOrDefault(diff.track, 0L);
+            boolean displayed = map != null && map == mapData;
+            if (diff.baseVersion == 0) {
+                map = diff.toMap();
+                displayed = false;
+            } else if (map != null && diff.baseVersion == version && map.length == diff.rows && map[0].length == diff.columns) {
+                diff.applyTo(map);
+            } else {
+                throw new IllegalStateException("Diff from version " + diff.baseVersion + " of floor " + diff.track
+                        + " does not follow held version " + version);
+            }
+            tracks.put(diff.track, map);
+            versions.put(diff.track, diff.version);
+
+            if (displayed) {
+                int startX = BORDER_WIDTH + (getWidth() - diff.columns * CELL_SIZE - 2 * BORDER_WIDTH) / 2;
+                int startY = BORDER_WIDTH + (getHeight() - diff.rows * CELL_SIZE - 2 * BORDER_WIDTH) / 2;
+                for (int cell : diff.cell) {
+                    repaint(startX + (cell % diff.columns) * CELL_SIZE, startY + (cell / diff.columns) * CELL_SIZE, CELL_SIZE + 1, CELL_SIZE + 1);
+                }
+            } else {
+                mapData = map;
+                repaint();
+            }
+        });
+    }
+    
     public static void main(String[] args) {
     	
     	// Create blocking queue to pool map data
@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	MigrationConnection
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// One end of a non-blocking migration connection between an island and the MigrationCoordinator.
+// Messages are framed as
+//
+//	int length | byte type | payload (length - 1 bytes)
+//
+// Partial reads are accumulated until a whole frame is available and writes are queued until
+// the channel accepts them, so neither side ever blocks on the socket. Frames may be sent from
+// any thread; reading and flushing happen on the thread owning the Selector.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class MigrationConnection {
+
+    final static byte HELLO = 1;			// Island to coordinator: int island id
+    final static byte OFFER = 2;			// Island to coordinator: elite genome to exchange
+    final static byte IMMIGRANT = 3;		// Coordinator to island: genome received in exchange
+    final static byte BEST = 4;				// Island to coordinator: double affinity, genome
+    final static byte DONE = 5;				// Island to coordinator: island finished searching
+    final static byte STOP = 6;				// Coordinator to island: stop searching
+
+    private final static int MAX_FRAME = 1 << 20;	// Largest frame accepted from the other end
+
+    final SocketChannel channel;					// Underlying non-blocking channel
+    private final SelectionKey key;					// Registration of the channel with the Selector
+    private ByteBuffer in = ByteBuffer.allocate(1024);	// Bytes read but not yet handled
+    private final Queue<ByteBuffer> out = new ArrayDeque<>();	// Frames waiting to be written
+
+    int islandId = -1;								// Island on the other end, once it said HELLO
+    boolean done = false;							// Whether the island on the other end finished
+
+    public MigrationConnection(SocketChannel channel, SelectionKey key) {
+        this.channel = channel;
+        this.key = key;
+        key.attach(this);
+    }
+
+    // Handles a single frame received from the other end
+    interface FrameHandler {
+        void handle(MigrationConnection connection, byte type, ByteBuffer payload) throws IOException;
+    }
+
+    //----------------------------------------------------------------------
+    // send
+    //----------------------------------------------------------------------
+    // Queues a frame holding the given payload (may be null) and asks the
+    // Selector to report the channel as writable.
+    //
+
+    public void send(byte type, byte[] payload) {
+        int length = payload == null ? 0 : payload.length;
+        ByteBuffer frame = ByteBuffer.allocate(5 + length);
+        frame.putInt(1 + length).put(type);
+        if (payload != null) {
+            frame.put(payload);
+        }
+        frame.flip();
+        synchronized (out) {
+            out.add(frame);
+        }
+        if (key.isValid()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            key.selector().wakeup();
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // flush
+    //----------------------------------------------------------------------
+    // Writes as many queued frames as the channel accepts, and stops asking
+    // for writability once the queue is empty.
+    //
+
+    public void flush() throws IOException {
+        synchronized (out) {
+            while (!out.isEmpty()) {
+                ByteBuffer frame = out.peek();
+                channel.write(frame);
+                if (frame.hasRemaining()) {
+                    return;
+                }
+                out.poll();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // read
+    //----------------------------------------------------------------------
+    // Reads whatever is available and passes every complete frame to the
+    // handler. Returns false once the other end has closed the connection.
+    //
+
+    public boolean read(FrameHandler handler) throws IOException {
+        if (channel.read(in) < 0) {
+            return false;
+        }
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < 1 || length > MAX_FRAME) {
+                throw new IOException("Invalid migration frame length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+            in.getInt();
+            byte type = in.get();
+            ByteBuffer payload = in.slice();
+            payload.limit(length - 1);
+            in.position(in.position() + length - 1);
+            handler.handle(this, type, payload);
+        }
+        in.compact();
+
+        // Grow the buffer if the next frame does not fit
+        if (in.position() >= 4) {
+            int needed = 4 + in.getInt(0);
+            if (needed > in.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(needed);
+                in.flip();
+                larger.put(in);
+                in = larger;
+            }
+        }
+        return true;
+    }
+
+    //----------------------------------------------------------------------
+    // close
+    //----------------------------------------------------------------------
+    // Cancels the registration and closes the channel.
+    //
+
+    public void close() {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	MigrationCoordinator
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Coordinates islands running in separate JVMs (see IslandNode). A single thread serves every
+// connection through a Selector on non-blocking channels.
+//
+//	OFFER		Held until an OFFER from a different island arrives, then both islands receive the
+//				other's genome as an IMMIGRANT, the same pairing an Exchanger performs in one JVM. A
+//				new OFFER from the island already waiting replaces its held genome
+//	BEST		Updates the global best map, once it reaches the target affinity every island is
+//				sent STOP
+//	DONE		Once every island that said HELLO is done the global best map is printed and the
+//				coordinator exits
+//
+// Testing on one machine:
+//
+//	java MigrationCoordinator 5375 4 [targetAffinity]
+//	java IslandNode localhost 5375 1 &
+//	java IslandNode localhost 5375 2 &
+//	...
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class MigrationCoordinator {
+
+    private final int expectedIslands;					// Islands that must finish before exiting
+    private final double targetAffinity;				// Affinity at which every island is stopped
+    private final Set<MigrationConnection> islands = new HashSet<>();	// Islands currently connected
+    private int finishedIslands = 0;					// Islands that sent DONE
+    private boolean stopSent = false;					// Whether STOP was broadcast
+
+    private MigrationConnection pendingOffer;			// Island waiting for an exchange partner
+    private byte[] pendingGenome;						// Genome offered by pendingOffer
+
+    private int[][] bestMap;							// Best map reported by any island
+    private double bestAffinity = Double.NEGATIVE_INFINITY;	// Affinity of bestMap
+    private int bestIsland = -1;						// Island that reported bestMap
+
+    public MigrationCoordinator(int expectedIslands, double targetAffinity) {
+        this.expectedIslands = expectedIslands;
+        this.targetAffinity = targetAffinity;
+    }
+
+    //----------------------------------------------------------------------
+    // serve
+    //----------------------------------------------------------------------
+    // Accepts islands on the given port and handles their messages until
+    // every expected island is done.
+    //
+
+    public void serve(int port) throws IOException {
+        try (Selector selector = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("Coordinator listening on port " + port + " for " + expectedIslands + " islands");
+
+            while (finishedIslands < expectedIslands) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        SocketChannel channel = server.accept();
+                        if (channel != null) {
+                            channel.configureBlocking(false);
+                            islands.add(new MigrationConnection(channel, channel.register(selector, SelectionKey.OP_READ)));
+                        }
+                        continue;
+                    }
+                    MigrationConnection connection = (MigrationConnection) key.attachment();
+                    try {
+                        if (key.isReadable() && !connection.read(this::handle)) {
+                            disconnect(connection);
+                            continue;
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (IOException e) {
+                        System.out.println("Island " + connection.islandId + " lost: " + e.getMessage());
+                        disconnect(connection);
+                    }
+                }
+            }
+            // Deliver any pending STOP messages before closing
+            for (MigrationConnection connection : islands) {
+                connection.flush();
+                connection.close();
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // handle
+    //----------------------------------------------------------------------
+    // Handles a single frame received from an island.
+    //
+
+    private void handle(MigrationConnection connection, byte type, ByteBuffer payload) {
+        switch (type) {
+            case MigrationConnection.HELLO:
+                connection.islandId = payload.getInt();
+                System.out.println("Island " + connection.islandId + " joined");
+                if (stopSent) {
+                    connection.send(MigrationConnection.STOP, null);
+                }
+                break;
+
+            case MigrationConnection.OFFER:
+                byte[] genome = new byte[payload.remaining()];
+                payload.get(genome);
+                // Pair with the waiting island, or wait for the next one (replacing this island's
+                // earlier offer if it is the one waiting)
+                if (pendingOffer != null && pendingOffer != connection) {
+                    pendingOffer.send(MigrationConnection.IMMIGRANT, genome);
+                    connection.send(MigrationConnection.IMMIGRANT, pendingGenome);
+                    pendingOffer = null;
+                    pendingGenome = null;
+                } else {
+                    pendingOffer = connection;
+                    pendingGenome = genome;
+                }
+                break;
+
+            case MigrationConnection.BEST:
+                double affinity = payload.getDouble();
+                int[][] map = GenomeCodec.decode(payload);
+                if (affinity > bestAffinity) {
+                    bestAffinity = affinity;
+                    bestMap = map;
+                    bestIsland = connection.islandId;
+                    System.out.println("Global best affinity " + affinity + " from island " + bestIsland);
+                }
+                if (affinity >= targetAffinity && !stopSent) {
+                    stopSent = true;
+                    for (MigrationConnection island : islands) {
+                        island.send(MigrationConnection.STOP, null);
+                    }
+                }
+                break;
+
+            case MigrationConnection.DONE:
+                finish(connection);
+                break;
+
+            default:
+                System.out.println("Unknown message " + type + " from island " + connection.islandId);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // disconnect
+    //----------------------------------------------------------------------
+    // Drops an island that closed its connection, counting it as done.
+    //
+
+    private void disconnect(MigrationConnection connection) {
+        finish(connection);
+        islands.remove(connection);
+        connection.close();
+    }
+
+    // Marks an island as done and withdraws its pending offer
+    private void finish(MigrationConnection connection) {
+        if (connection.done) {
+            return;
+        }
+        connection.done = true;
+        finishedIslands++;
+        if (pendingOffer == connection) {
+            pendingOffer = null;
+            pendingGenome = null;
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Arguments: port, number of islands, optional target affinity.
+    //
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java MigrationCoordinator <port> <islands> [targetAffinity]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        int islands = Integer.parseInt(args[1]);
+        double target = args.length > 2 ? Double.parseDouble(args[2]) : Double.POSITIVE_INFINITY;
+
+        MigrationCoordinator coordinator = new MigrationCoordinator(islands, target);
+        coordinator.serve(port);
+
+        System.out.println("\nGlobal best affinity: " + coordinator.bestAffinity + " from island " + coordinator.bestIsland);
+        if (coordinator.bestMap != null) {
+            ParallelGeneticAlgorithm.printArray(coordinator.bestMap);
+        }
+    }
+}
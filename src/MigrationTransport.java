@@ -0,0 +1,32 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	MigrationTransport
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Moves elite floor maps between islands. exchange follows the semantics of
+// Exchanger.exchange(V x, long timeout, TimeUnit unit): the caller hands over one of its maps and
+// waits for another island to arrive, receiving that island's map in return.
+//
+// Implementations:
+//	LocalMigrationTransport		Islands running as threads of the same JVM
+//	SocketMigrationTransport	Islands running in separate JVMs, connected to a MigrationCoordinator
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public interface MigrationTransport extends AutoCloseable {
+
+    // Hands over map and waits up to timeout for the map of another island
+    int[][] exchange(int[][] map, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException;
+
+    // Reports the best map found by the calling island so far
+    void reportBest(int[][] map, double affinity);
+
+    // Returns true once the islands have been told to stop searching
+    boolean isStopped();
+
+    // Leaves the island model, no further maps are exchanged
+    @Override
+    void close();
+}
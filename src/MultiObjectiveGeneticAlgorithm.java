@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	MultiObjectiveGeneticAlgorithm
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Multi-objective mode of the floor map genetic algorithm following NSGA-II. Instead of a single
+// affinity value each floor map is scored on every objective of FloorObjectives and the population
+// is ranked by Pareto dominance and crowding distance.
+//
+//	Generate POPULATION random floor maps
+//	|
+//	Create POPULATION children in parallel (tournament selection, crossover, mutation with
+//	VariationOperator.flip), each with exactly STATIONS stations
+//	Evaluate all objectives of each child in parallel
+//	|
+//	Merge parents and children, sort into non-dominated fronts in parallel
+//	Keep the best POPULATION maps by front, then by crowding distance
+//	|
+//	Repeat for ITERATIONS generations and print the final Pareto front
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class MultiObjectiveGeneticAlgorithm {
+
+    private final static int POPULATION = Math.max(16, ParallelGeneticAlgorithm.numCores * 8);	// Number of floor maps kept between generations
+
+    private final ExecutorService workers;		// Workers shared by breeding, evaluation and sorting
+    private final int numWorkers;				// Number of worker threads
+    private final ParetoSorter sorter;			// Parallel non-dominated sorter
+
+    private int[][][] population;				// Current floor maps
+    private double[][] objectives;				// Objectives of each floor map
+    private int[] rank;							// Front index of each floor map
+    private double[] crowding;					// Crowding distance of each floor map
+
+    public MultiObjectiveGeneticAlgorithm(ExecutorService workers, int numWorkers) {
+        this.workers = workers;
+        this.numWorkers = numWorkers;
+        this.sorter = new ParetoSorter(workers, numWorkers);
+    }
+
+    //----------------------------------------------------------------------
+    // initialize
+    //----------------------------------------------------------------------
+    // Generates and evaluates the random starting population.
+    //
+
+    private void initialize() throws InterruptedException {
+        population = new int[POPULATION][][];
+        objectives = new double[POPULATION][];
+        parallelFor(POPULATION, i -> {
+            population[i] = ParallelGeneticAlgorithm.generateRandomFloorMap();
+            objectives[i] = FloorObjectives.evaluate(population[i]);
+        });
+        rankPopulation(population, objectives, POPULATION);
+    }
+
+    //----------------------------------------------------------------------
+    // generation
+    //----------------------------------------------------------------------
+    // Breeds POPULATION children from the current population and keeps the
+    // best POPULATION maps of parents and children combined.
+    //
+
+    private void generation() throws InterruptedException {
+        int[][][] combined = Arrays.copyOf(population, POPULATION * 2);
+        double[][] combinedObjectives = Arrays.copyOf(objectives, POPULATION * 2);
+
+        // Breed and evaluate each child on the workers
+        parallelFor(POPULATION, i -> {
+            int[][] parent1 = population[tournament()];
+            int[][] parent2 = population[tournament()];
+            int[][] child = ParallelGeneticAlgorithm.crossover(parent1, parent2);
+
+            // Fall back to a copy of the first parent if the child is not valid
+            if (child == null) {
+                child = ParallelGeneticAlgorithm.copyMap(parent1);
+            }
+            if (ThreadLocalRandom.current().nextInt(ParallelGeneticAlgorithm.MUTATION_RATE) == 0) {
+                child = VariationOperator.flip(child);
+            }
+
+            // Only rank valid floor plans, so no map can win an objective by its station count
+            if (VariationOperator.validate(child) == null) {
+                child = ParallelGeneticAlgorithm.generateRandomFloorMap();
+            }
+            combined[POPULATION + i] = child;
+            combinedObjectives[POPULATION + i] = FloorObjectives.evaluate(child);
+        });
+
+        rankPopulation(combined, combinedObjectives, POPULATION);
+    }
+
+    //----------------------------------------------------------------------
+    // rankPopulation
+    //----------------------------------------------------------------------
+    // Sorts the given maps into fronts and keeps the best keep maps,
+    // truncating the last front that fits by crowding distance.
+    //
+
+    private void rankPopulation(int[][][] maps, double[][] scores, int keep) throws InterruptedException {
+        List<int[]> fronts = sorter.sort(scores);
+
+        int[][][] nextPopulation = new int[keep][][];
+        double[][] nextObjectives = new double[keep][];
+        int[] nextRank = new int[keep];
+        double[] nextCrowding = new double[keep];
+        int size = 0;
+
+        for (int f = 0; f < fronts.size() && size < keep; f++) {
+            int[] front = fronts.get(f);
+            double[] distance = ParetoSorter.crowdingDistance(scores, front);
+
+            // Order the front by descending crowding distance when it has to be cut
+            Integer[] order = new Integer[front.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            if (size + front.length > keep) {
+                Arrays.sort(order, (a, b) -> Double.compare(distance[b], distance[a]));
+            }
+            for (int i = 0; i < order.length && size < keep; i++) {
+                nextPopulation[size] = maps[front[order[i]]];
+                nextObjectives[size] = scores[front[order[i]]];
+                nextRank[size] = f;
+                nextCrowding[size] = distance[order[i]];
+                size++;
+            }
+        }
+        population = nextPopulation;
+        objectives = nextObjectives;
+        rank = nextRank;
+        crowding = nextCrowding;
+    }
+
+    //----------------------------------------------------------------------
+    // tournament
+    //----------------------------------------------------------------------
+    // Binary tournament selection preferring the lower front and, within
+    // the same front, the larger crowding distance.
+    //
+
+    private int tournament() {
+        int a = ThreadLocalRandom.current().nextInt(POPULATION);
+        int b = ThreadLocalRandom.current().nextInt(POPULATION);
+        if (rank[a] != rank[b]) {
+            return rank[a] < rank[b] ? a : b;
+        }
+        return crowding[a] >= crowding[b] ? a : b;
+    }
+
+    //----------------------------------------------------------------------
+    // parallelFor
+    //----------------------------------------------------------------------
+    // Runs body for every index in [0, size) split evenly over the workers.
+    //
+
+    private void parallelFor(int size, IndexTask body) throws InterruptedException {
+        List<Callable<Void>> calls = new ArrayList<>();
+        for (int c = 0; c < numWorkers; c++) {
+            int from = size * c / numWorkers;
+            int to = size * (c + 1) / numWorkers;
+            calls.add(() -> {
+                for (int i = from; i < to; i++) {
+                    body.run(i);
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : workers.invokeAll(calls)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    // Work performed for a single index of the population
+    private interface IndexTask {
+        void run(int index);
+    }
+
+    //----------------------------------------------------------------------
+    // bestIndex
+    //----------------------------------------------------------------------
+    // Returns the index of the map with the highest affinity.
+    //
+
+    private int bestIndex() {
+        int best = 0;
+        for (int i = 1; i < POPULATION; i++) {
+            if (objectives[i][FloorObjectives.AFFINITY] < objectives[best][FloorObjectives.AFFINITY]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    //----------------------------------------------------------------------
+    // printFront
+    //----------------------------------------------------------------------
+    // Prints the objectives of every map on the first front, followed by the
+    // map with the highest affinity.
+    //
+
+    private void printFront() {
+        int best = -1;
+        System.out.println("Pareto front (" + String.join(", ", FloorObjectives.NAMES) + "):");
+        for (int i = 0; i < POPULATION; i++) {
+            if (rank[i] != 0) {
+                continue;
+            }
+            double[] score = objectives[i].clone();
+            score[FloorObjectives.AFFINITY] = -score[FloorObjectives.AFFINITY];
+            System.out.println(Arrays.toString(score));
+            if (best < 0 || objectives[i][FloorObjectives.AFFINITY] < objectives[best][FloorObjectives.AFFINITY]) {
+                best = i;
+            }
+        }
+        System.out.println("\nHighest affinity map on the front:");
+        ParallelGeneticAlgorithm.printArray(population[best]);
+    }
+
+    //----------------------------------------------------------------------
+    // benchmark
+    //----------------------------------------------------------------------
+    // Runs the given number of generations on a pool of the given number of
+    // workers and returns the statistics of the run.
+    //
+
+    static RunStats benchmark(int numWorkers, int generations, double targetAffinity) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(numWorkers);
+        try {
+            RunStats stats = new RunStats(numWorkers, targetAffinity);
+            MultiObjectiveGeneticAlgorithm algorithm = new MultiObjectiveGeneticAlgorithm(workers, numWorkers);
+            algorithm.initialize();
+            for (int iteration = 0; iteration < generations; iteration++) {
+                algorithm.generation();
+                int best = algorithm.bestIndex();
+                stats.reportBest(algorithm.population[best], -algorithm.objectives[best][FloorObjectives.AFFINITY]);
+            }
+            stats.add((long) POPULATION * (generations + 1));
+            stats.finish();
+            return stats;
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Runs the multi-objective genetic algorithm for ITERATIONS generations
+    // using one worker per available core.
+    //
+
+    public static void main(String[] args) throws InterruptedException {
+        int numWorkers = ParallelGeneticAlgorithm.numCores;
+        System.out.println(SchedulerConfig.current() + "\n");
+
+        ExecutorService workers = Executors.newFixedThreadPool(numWorkers);
+        try {
+            MultiObjectiveGeneticAlgorithm algorithm = new MultiObjectiveGeneticAlgorithm(workers, numWorkers);
+            algorithm.initialize();
+            for (int iteration = 0; iteration < ParallelGeneticAlgorithm.ITERATIONS; iteration++) {
+                algorithm.generation();
+                System.out.println("Generation " + (iteration + 1) + " : Best Affinity: "
+                        + -algorithm.objectives[algorithm.bestIndex()][FloorObjectives.AFFINITY]);
+            }
+            System.out.println();
+            algorithm.printFront();
+        } finally {
+            workers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	NeighborIndex
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Compressed (CSR style) list of the usable neighbors of every usable cell of a FloorMask within a
+// given radius, together with the weight of each neighbor:
+//
+//	cellRow[c], cellCol[c]						Position of the c-th usable cell
+//	neighborRow[k], neighborCol[k], weight[k]	Position and weight of each usable neighbor, for
+//	offsets[c] <= k < offsets[c + 1]
+//
+// Neighbors are every usable cell within a Chebyshev distance (ring) of radius, weighted by
+// 1 / ring so affinity decays with distance. A radius of 1 gives the 8 direct neighbors with a
+// weight of 1, which is the original 3x3 affinity. Building the index once per floor turns the
+// affinity kernel into a tight walk over arrays, no matter how large the radius is.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class NeighborIndex {
+
+    final int radius;					// Largest ring of neighbors included
+    final int[] cellRow;				// Row of each usable cell
+    final int[] cellCol;				// Column of each usable cell
+    final int[] offsets;				// Start of each usable cell's neighbors, one extra entry at the end
+    final int[] neighborRow;			// Row of each neighbor
+    final int[] neighborCol;			// Column of each neighbor
+    final double[] weight;				// Weight of each neighbor
+
+    public NeighborIndex(FloorMask mask, int radius) {
+        if (radius < 1) {
+            throw new IllegalArgumentException("Neighbor radius must be at least 1, was " + radius);
+        }
+        this.radius = radius;
+        this.cellRow = mask.cellRow;
+        this.cellCol = mask.cellCol;
+        int cells = mask.usableCount;
+
+        // Count the neighbors of every usable cell to size the index
+        int links = 0;
+        for (int c = 0; c < cells; c++) {
+            links += countNeighbors(mask, cellRow[c], cellCol[c]);
+        }
+        this.offsets = new int[cells + 1];
+        this.neighborRow = new int[links];
+        this.neighborCol = new int[links];
+        this.weight = new double[links];
+
+        // Fill the index, neighbors of each cell in row major order
+        int k = 0;
+        for (int c = 0; c < cells; c++) {
+            int i = cellRow[c];
+            int j = cellCol[c];
+            offsets[c] = k;
+            for (int x = -radius; x <= radius; x++) {
+                for (int y = -radius; y <= radius; y++) {
+                    if ((x != 0 || y != 0) && mask.isUsable(i + x, j + y)) {
+                        neighborRow[k] = i + x;
+                        neighborCol[k] = j + y;
+                        weight[k] = 1.0 / Math.max(Math.abs(x), Math.abs(y));
+                        k++;
+                    }
+                }
+            }
+        }
+        offsets[cells] = k;
+    }
+
+    //----------------------------------------------------------------------
+    // neighborCount
+    //----------------------------------------------------------------------
+    // Returns the number of usable neighbors of the c-th usable cell.
+    //
+
+    public int neighborCount(int c) {
+        return offsets[c + 1] - offsets[c];
+    }
+
+    // Number of usable cells within radius of the given cell
+    private int countNeighbors(FloorMask mask, int row, int column) {
+        int count = 0;
+        for (int x = -radius; x <= radius; x++) {
+            for (int y = -radius; y <= radius; y++) {
+                if ((x != 0 || y != 0) && mask.isUsable(row + x, column + y)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	OperatorSelector
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Adaptive operator selection for a single Island (not thread safe, owned by the island thread).
+//
+// Every use of an operator is credited with the affinity it gained over its better parent divided
+// by the time it took to create and evaluate the child (System.nanoTime on the island thread, which
+// is CPU time as long as the thread is not descheduled), so an operator is only preferred if it
+// pays off per unit of work. The credit of each operator is an exponential recency-weighted
+// average, so the preference follows the phase of the run, and operators are picked by probability
+// matching with a floor of MIN_PROBABILITY so that no operator is ever starved of the chance to
+// recover.
+//
+// The island's mutation rate (the chance a crossover child is also flipped by VariationOperator.flip,
+// which keeps the number of stations) adapts by the 1/5th success rule: it grows while more than a
+// fifth of mutated children improve on their parents and shrinks otherwise.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class OperatorSelector {
+
+    private final static double MIN_PROBABILITY = 0.05;		// Smallest chance of picking any operator
+    private final static double DECAY = 0.1;				// Weight of the newest reward in the average
+    private final static double MIN_MUTATION_RATE = 1.0 / 64;	// Bounds of the self-adapting mutation rate
+    private final static double MAX_MUTATION_RATE = 0.5;
+    private final static int ADAPTATION_WINDOW = 50;		// Mutations between mutation rate adjustments
+
+    private final VariationOperator[] operators = VariationOperator.values();
+    private final double[] credit = new double[operators.length];	// Average reward per nanosecond
+    private final long[] uses = new long[operators.length];		// Times each operator was applied
+    private final long[] improvements = new long[operators.length];	// Times each operator improved
+
+    private double mutationRate = 1.0 / ParallelGeneticAlgorithm.MUTATION_RATE;	// Chance of an extra flip
+    private int mutations = 0;						// Mutations in the current window
+    private int successfulMutations = 0;			// Mutations that improved in the current window
+
+    public OperatorSelector() {
+        // Start every operator with the same small credit so all get tried
+        Arrays.fill(credit, 1e-9);
+    }
+
+    //----------------------------------------------------------------------
+    // select
+    //----------------------------------------------------------------------
+    // Picks an operator with probability proportional to its credit.
+    //
+
+    public VariationOperator select() {
+        double total = 0.0;
+        for (double c : credit) {
+            total += c;
+        }
+        double scale = 1.0 - MIN_PROBABILITY * operators.length;
+        double pick = ThreadLocalRandom.current().nextDouble();
+        for (int i = 0; i < operators.length; i++) {
+            pick -= MIN_PROBABILITY + scale * credit[i] / total;
+            if (pick < 0) {
+                return operators[i];
+            }
+        }
+        return operators[operators.length - 1];
+    }
+
+    //----------------------------------------------------------------------
+    // reward
+    //----------------------------------------------------------------------
+    // Credits an operator with the affinity gained over the better parent
+    // (0 if none, or if the child was not valid) and the time it took.
+    //
+
+    public void reward(VariationOperator operator, double gain, long nanos) {
+        int i = operator.ordinal();
+        uses[i]++;
+        if (gain > 0) {
+            improvements[i]++;
+        }
+        double rate = Math.max(0.0, gain) / Math.max(1L, nanos);
+        credit[i] = Math.max(1e-12, (1 - DECAY) * credit[i] + DECAY * rate);
+    }
+
+    //----------------------------------------------------------------------
+    // shouldMutate
+    //----------------------------------------------------------------------
+    // Returns true if a crossover child should also be flipped.
+    //
+
+    public boolean shouldMutate() {
+        return ThreadLocalRandom.current().nextDouble() < mutationRate;
+    }
+
+    //----------------------------------------------------------------------
+    // mutated
+    //----------------------------------------------------------------------
+    // Records whether a mutated child improved on its parents, adjusting
+    // the mutation rate at the end of every window.
+    //
+
+    public void mutated(boolean improved) {
+        mutations++;
+        if (improved) {
+            successfulMutations++;
+        }
+        if (mutations == ADAPTATION_WINDOW) {
+            if (successfulMutations * 5 > mutations) {
+                mutationRate = Math.min(MAX_MUTATION_RATE, mutationRate * 1.5);
+            } else {
+                mutationRate = Math.max(MIN_MUTATION_RATE, mutationRate / 1.5);
+            }
+            mutations = 0;
+            successfulMutations = 0;
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // getMutationRate
+    //----------------------------------------------------------------------
+    // Returns the current chance that a crossover child is also flipped.
+    //
+
+    public double getMutationRate() {
+        return mutationRate;
+    }
+
+    //----------------------------------------------------------------------
+    // toString
+    //----------------------------------------------------------------------
+    // Summarizes the use and success of every operator.
+    //
+
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < operators.length; i++) {
+            summary.append(operators[i]).append(": ").append(improvements[i]).append('/').append(uses[i]).append(" improved, ");
+        }
+        summary.append("mutation rate ").append(String.format("%.3f", mutationRate));
+        return summary.toString();
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	OptimizationJob
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// A floor layout optimization submitted to the OptimizationServer. The job runs a number of Islands
+// on the server's shared worker pool, in slices of SLICE generations, so that concurrent jobs take
+// turns on the workers instead of each starting threads of its own.
+//
+//	start: submit one slice per island to the pool
+//	|
+//	Slice: evolve the island for SLICE generations on the job's floor, then let it accept a copy
+//	of the job's best map (migration), and submit the next slice of the island
+//	|
+//	The job ends when every island has run its generations, the target affinity is reached, or
+//	the job is cancelled, after which onFinished is called once
+//
+// An island is only ever touched by one slice at a time; handing it from slice to slice through the
+// executor makes its state visible to whichever worker runs the next slice.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class OptimizationJob {
+
+    // Life cycle of a job
+    enum State {
+        QUEUED, RUNNING, DONE, CANCELLED, FAILED
+    }
+
+    final static int SLICE = 10;					// Generations run by an island before yielding its worker
+
+    final int id;									// Identifier handed to the client
+    final FloorMask mask;							// Floor of the job
+    final int islands;								// Number of islands
+    final int islandSize;							// Number of floor maps on each island
+    final int generations;							// Generations each island runs
+    final double targetAffinity;					// Affinity at which the job stops early
+
+    private final Island[] population;				// Islands of the job, created by their first slice
+    private final AtomicIntegerArray generation;	// Generations run by each island, read by progress requests
+    private final AtomicInteger activeIslands = new AtomicInteger();	// Islands whose slices are still running
+    private volatile boolean cancelled = false;		// Whether the client cancelled the job
+    private volatile State state = State.QUEUED;	// Current state
+    private volatile String error;					// Reason the job failed
+    private RunStats stats;							// Best map, evaluations and timing, set by start
+    private Consumer<OptimizationJob> onFinished;	// Called once when the job ends
+
+    public OptimizationJob(int id, FloorMask mask, int islands, int islandSize, int generations, double targetAffinity) {
+        this.id = id;
+        this.mask = mask;
+        this.islands = islands;
+        this.islandSize = islandSize;
+        this.generations = generations;
+        this.targetAffinity = targetAffinity;
+        this.population = new Island[islands];
+        this.generation = new AtomicIntegerArray(islands);
+    }
+
+    //----------------------------------------------------------------------
+    // start
+    //----------------------------------------------------------------------
+    // Starts the job on the given pool. onFinished is called on the worker
+    // that ends the job.
+    //
+
+    public synchronized void start(ExecutorService workers, Consumer<OptimizationJob> onFinished) {
+        this.onFinished = onFinished;
+        this.stats = new RunStats(islands, targetAffinity);
+        if (cancelled) {
+            finish(State.CANCELLED);
+            return;
+        }
+        state = State.RUNNING;
+        activeIslands.set(islands);
+        for (int island = 0; island < islands; island++) {
+            submit(workers, island);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // cancel
+    //----------------------------------------------------------------------
+    // Asks the job to stop. A running job stops after the current slice of
+    // every island, a queued job never starts.
+    //
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // Submits the next slice of an island, ending the island if the pool is shut down
+    private void submit(ExecutorService workers, int island) {
+        try {
+            workers.execute(() -> slice(workers, island));
+        } catch (RejectedExecutionException e) {
+            cancelled = true;
+            islandEnded();
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // slice
+    //----------------------------------------------------------------------
+    // Runs SLICE generations of an island on the calling worker and
+    // submits the next slice if the island is not done.
+    //
+
+    private void slice(ExecutorService workers, int island) {
+        ParallelGeneticAlgorithm.setJobMask(mask);
+        try {
+            if (cancelled || stats.timeToTargetSeconds() >= 0) {
+                islandEnded();
+                return;
+            }
+            if (population[island] == null) {
+                population[island] = new Island(islandSize);
+            }
+            Island current = population[island];
+            int end = Math.min(generations, generation.get(island) + SLICE);
+            for (int g = generation.get(island); g < end; g++) {
+                if (current.evolve()) {
+                    stats.reportBest(current.best(), current.bestAffinity());
+                }
+            }
+            generation.set(island, end);
+            stats.reportBest(current.best(), current.bestAffinity());
+
+            // Migrate the best map of the job into the island
+            int[][] best = stats.bestMap();
+            if (best != null && best != current.best()) {
+                current.accept(ParallelGeneticAlgorithm.copyMap(best));
+            }
+
+            if (end < generations) {
+                submit(workers, island);
+            } else {
+                islandEnded();
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            error = e.toString();
+            cancelled = true;
+            islandEnded();
+        } finally {
+            ParallelGeneticAlgorithm.setJobMask(null);
+        }
+    }
+
+    // Counts an island that will not run again, finishing the job after the last one
+    private void islandEnded() {
+        if (activeIslands.decrementAndGet() == 0) {
+            long evaluations = 0;
+            for (Island island : population) {
+                if (island != null) {
+                    evaluations += island.evaluations;
+                }
+            }
+            stats.add(evaluations);
+            finish(error != null ? State.FAILED : cancelled && stats.timeToTargetSeconds() < 0 ? State.CANCELLED : State.DONE);
+        }
+    }
+
+    // Records the end of the job and notifies the scheduler
+    private void finish(State end) {
+        stats.finish();
+        state = end;
+        onFinished.accept(this);
+    }
+
+    //----------------------------------------------------------------------
+    // toJson
+    //----------------------------------------------------------------------
+    // Describes the state and progress of the job as a JSON object.
+    //
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"id\":").append(id).append(",\"state\":\"").append(state).append('"');
+        json.append(",\"islands\":").append(islands).append(",\"generations\":").append(generations);
+        if (error != null) {
+            json.append(",\"error\":").append(OptimizationServer.quote(error));
+        }
+        RunStats current;
+        synchronized (this) {
+            current = stats;
+        }
+        if (current != null) {
+            int slowest = Integer.MAX_VALUE;
+            for (int island = 0; island < islands; island++) {
+                slowest = Math.min(slowest, generation.get(island));
+            }
+            json.append(",\"generation\":").append(slowest);
+            json.append(",\"bestAffinity\":").append(OptimizationServer.number(current.bestAffinity()));
+            json.append(",\"timeToTarget\":").append(OptimizationServer.number(current.timeToTargetSeconds()));
+            if (state != State.RUNNING) {
+                json.append(",\"seconds\":").append(OptimizationServer.number(current.seconds()));
+                json.append(",\"evaluations\":").append(current.evaluations());
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    //----------------------------------------------------------------------
+    // bestToJson
+    //----------------------------------------------------------------------
+    // Returns the best layout found so far as a JSON object, or null if no
+    // layout has been evaluated yet.
+    //
+
+    public String bestToJson() {
+        RunStats current;
+        synchronized (this) {
+            current = stats;
+        }
+        int[][] map = current != null ? current.bestMap() : null;
+        if (map == null) {
+            return null;
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\"id\":").append(id).append(",\"affinity\":").append(OptimizationServer.number(current.bestAffinity()));
+        json.append(",\"map\":[");
+        for (int i = 0; i < map.length; i++) {
+            json.append(i > 0 ? "," : "").append('[');
+            for (int j = 0; j < map[i].length; j++) {
+                json.append(j > 0 ? "," : "").append(map[i][j]);
+            }
+            json.append(']');
+        }
+        return json.append("]}").toString();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    // Whether the job has ended and will not change any more
+    public boolean isFinished() {
+        State current = state;
+        return current == State.DONE || current == State.CANCELLED || current == State.FAILED;
+    }
+}
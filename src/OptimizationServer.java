@@ -0,0 +1,496 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	OptimizationServer
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Long-lived optimization service on a local port, using the JDK's built-in HTTP server. Jobs share
+// one pool of SchedulerConfig workers (see OptimizationJob), so the JIT stays warm between requests.
+//
+//	POST	/jobs					Submit a job, answers {"id":n,"state":"QUEUED"}. Body (all optional):
+//									{"floor":["########","#......#",...], "islands":4, "islandSize":64,
+//									 "generations":500, "target":240}
+//	GET		/jobs					State of every known job
+//	GET		/jobs/{id}				State and progress of a job
+//	GET		/jobs/{id}/progress		Streams the state of a job as one JSON line every PROGRESS_INTERVAL
+//									milliseconds until the job ends
+//	GET		/jobs/{id}/best			Best layout found so far
+//	DELETE	/jobs/{id}				Cancel a job
+//
+// At most MAX_RUNNING jobs run at once; up to MAX_QUEUED more wait in order, further submissions are
+// refused with 503. The last MAX_FINISHED finished jobs are kept for their results. Progress streams
+// run on their own threads, so open streams never hold up the HANDLER_THREADS answering requests;
+// at most MAX_STREAMS are open at once, further progress requests are refused with 503.
+//
+//	java OptimizationServer [port]
+//	curl -X POST -d '{"generations":300}' localhost:5380/jobs
+//	curl localhost:5380/jobs/1/progress
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class OptimizationServer {
+
+    private final static int PORT = 5380;									// Default port
+    private final static int MAX_RUNNING = Integer.getInteger("server.jobs", 4);		// Jobs running at once
+    private final static int MAX_QUEUED = Integer.getInteger("server.queue", 16);		// Jobs waiting to run
+    private final static int MAX_FINISHED = 100;							// Finished jobs kept for their results
+    private final static int HANDLER_THREADS = 8;							// Threads answering requests
+    private final static long PROGRESS_INTERVAL = 500;						// Milliseconds between progress lines
+    private final static int MAX_STREAMS = Integer.getInteger("server.streams", 32);	// Progress streams open at once
+    private final static int MAX_ISLANDS = 64;								// Largest number of islands of a job
+    private final static int MAX_GENERATIONS = 100000;						// Largest number of generations of a job
+
+    private final ExecutorService workers;									// Pool shared by every job
+    private final ExecutorService streams = Executors.newCachedThreadPool();	// One thread per open progress stream
+    private final Semaphore streamPermits = new Semaphore(MAX_STREAMS);			// Progress streams that may still open
+    private final Map<Integer, OptimizationJob> jobs = new LinkedHashMap<>();	// Known jobs by id, oldest first
+    private final ArrayDeque<OptimizationJob> queue = new ArrayDeque<>();	// Jobs waiting to run
+    private int running = 0;												// Jobs currently running
+    private int nextId = 1;													// Id of the next job
+
+    public OptimizationServer(int numWorkers) {
+        this.workers = Executors.newFixedThreadPool(numWorkers);
+    }
+
+    //----------------------------------------------------------------------
+    // submit
+    //----------------------------------------------------------------------
+    // Queues a job built from the given parameters and starts it if a
+    // running slot is free. Returns null if the queue is full.
+    //
+
+    public synchronized OptimizationJob submit(FloorMask mask, int islands, int islandSize, int generations, double target) {
+        if (queue.size() >= MAX_QUEUED) {
+            return null;
+        }
+        OptimizationJob job = new OptimizationJob(nextId++, mask, islands, islandSize, generations, target);
+        jobs.put(job.id, job);
+        queue.add(job);
+        startQueued();
+        return job;
+    }
+
+    //----------------------------------------------------------------------
+    // cancel
+    //----------------------------------------------------------------------
+    // Cancels a job, removing it from the queue if it has not started.
+    // Returns false if there is no such job.
+    //
+
+    public synchronized boolean cancel(int id) {
+        OptimizationJob job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        job.cancel();
+        if (queue.remove(job)) {
+            // Never started, let it end right away without taking a running slot
+            running++;
+            job.start(workers, this::finished);
+        }
+        return true;
+    }
+
+    // Starts queued jobs while running slots are free
+    private void startQueued() {
+        while (running < MAX_RUNNING && !queue.isEmpty()) {
+            running++;
+            queue.poll().start(workers, this::finished);
+        }
+    }
+
+    // Called by a job when it ends, frees its slot and forgets the oldest finished jobs
+    private synchronized void finished(OptimizationJob job) {
+        running--;
+        int finished = 0;
+        for (OptimizationJob known : jobs.values()) {
+            if (known.isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<OptimizationJob> oldest = jobs.values().iterator();
+        while (finished > MAX_FINISHED && oldest.hasNext()) {
+            if (oldest.next().isFinished()) {
+                oldest.remove();
+                finished--;
+            }
+        }
+        startQueued();
+    }
+
+    private synchronized OptimizationJob job(int id) {
+        return jobs.get(id);
+    }
+
+    private synchronized List<OptimizationJob> allJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    //----------------------------------------------------------------------
+    // handle
+    //----------------------------------------------------------------------
+    // Routes a request under /jobs.
+    //
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean streaming = false;
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+            // path is {"", "jobs"}, {"", "jobs", id} or {"", "jobs", id, action}
+            if (path.length == 2) {
+                if (method.equals("POST")) {
+                    handleSubmit(exchange);
+                } else if (method.equals("GET")) {
+                    StringBuilder json = new StringBuilder("[");
+                    for (OptimizationJob job : allJobs()) {
+                        json.append(json.length() > 1 ? "," : "").append(job.toJson());
+                    }
+                    respond(exchange, 200, json.append(']').toString());
+                } else {
+                    respond(exchange, 405, error("Use GET or POST on /jobs"));
+                }
+                return;
+            }
+            OptimizationJob job = path.length <= 4 ? job(parseId(path[2])) : null;
+            if (job == null) {
+                respond(exchange, 404, error("No such job"));
+            } else if (path.length == 3 && method.equals("GET")) {
+                respond(exchange, 200, job.toJson());
+            } else if (path.length == 3 && method.equals("DELETE")) {
+                cancel(job.id);
+                respond(exchange, 202, job.toJson());
+            } else if (path.length == 4 && path[3].equals("best") && method.equals("GET")) {
+                String best = job.bestToJson();
+                respond(exchange, best != null ? 200 : 404, best != null ? best : error("No layout evaluated yet"));
+            } else if (path.length == 4 && path[3].equals("progress") && method.equals("GET")) {
+                if (!streamPermits.tryAcquire()) {
+                    respond(exchange, 503, error("Too many progress streams, at most " + MAX_STREAMS));
+                    return;
+                }
+                // Hand the stream to its own thread, it lasts until the job ends
+                streams.execute(() -> {
+                    try {
+                        streamProgress(exchange, job);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    } finally {
+                        exchange.close();
+                        streamPermits.release();
+                    }
+                });
+                streaming = true;
+            } else {
+                respond(exchange, 404, error("Unknown request"));
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            respond(exchange, 500, error(e.toString()));
+        } finally {
+            if (!streaming) {
+                exchange.close();
+            }
+        }
+    }
+
+    // Parses the parameters of a submitted job and queues it
+    private void handleSubmit(HttpExchange exchange) throws IOException {
+        Map<String, Object> spec;
+        FloorMask mask = ParallelGeneticAlgorithm.floorMask;
+        int islands, islandSize, generations;
+        double target;
+        try (InputStream body = exchange.getRequestBody()) {
+            String text = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            spec = text.isBlank() ? new LinkedHashMap<>() : parseObject(text);
+            if (spec.get("floor") instanceof List) {
+                List<String> rows = new ArrayList<>();
+                for (Object row : (List<?>) spec.get("floor")) {
+                    rows.add(String.valueOf(row));
+                }
+                mask = FloorMask.parse(rows, "Floor");
+            }
+            islands = integer(spec, "islands", Math.min(4, SchedulerConfig.current().workers), 1, MAX_ISLANDS);
+            islandSize = integer(spec, "islandSize", 64, 2, 4096);
+            generations = integer(spec, "generations", 500, 1, MAX_GENERATIONS);
+            target = number(spec, "target", Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            if (mask.usableCount < ParallelGeneticAlgorithm.STATIONS) {
+                throw new IllegalArgumentException("Floor has " + mask.usableCount + " usable cells, at least "
+                        + ParallelGeneticAlgorithm.STATIONS + " are required");
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+            return;
+        }
+        OptimizationJob job = submit(mask, islands, islandSize, generations, target);
+        if (job == null) {
+            respond(exchange, 503, error("Job queue is full"));
+        } else {
+            respond(exchange, 202, job.toJson());
+        }
+    }
+
+    // Sends the state of a job as one line every PROGRESS_INTERVAL until the job ends
+    private void streamProgress(HttpExchange exchange, OptimizationJob job) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            while (true) {
+                boolean finished = job.isFinished();
+                out.write((job.toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                if (finished) {
+                    break;
+                }
+                Thread.sleep(PROGRESS_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client stopped listening
+        }
+    }
+
+    // Sends a complete JSON response
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(String.valueOf(message)) + "}";
+    }
+
+    private static int parseId(String id) {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Reads a numeric parameter, checking its range
+    private static double number(Map<String, Object> spec, String name, double defaultValue, double min, double max) {
+        Object value = spec.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Double)) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+        double number = (Double) value;
+        if (number < min || number > max) {
+            throw new IllegalArgumentException(name + " must be between " + min + " and " + max);
+        }
+        return number;
+    }
+
+    // Reads a whole numeric parameter, rejecting fractions
+    private static int integer(Map<String, Object> spec, String name, int defaultValue, int min, int max) {
+        double number = number(spec, name, defaultValue, min, max);
+        if (number != Math.rint(number)) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+        return (int) number;
+    }
+
+    //----------------------------------------------------------------------
+    // quote
+    //----------------------------------------------------------------------
+    // Returns the given text as a JSON string literal.
+    //
+
+    static String quote(String text) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    //----------------------------------------------------------------------
+    // number
+    //----------------------------------------------------------------------
+    // Returns a number as JSON, with null for infinities and NaN, which
+    // JSON cannot represent.
+    //
+
+    static String number(double value) {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            return "null";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    //----------------------------------------------------------------------
+    // parseObject
+    //----------------------------------------------------------------------
+    // Parses a JSON object whose values are strings, numbers, booleans,
+    // null or arrays of those. Numbers become Doubles, arrays Lists.
+    //
+
+    static Map<String, Object> parseObject(String text) {
+        int[] position = {0};
+        Object value = parseValue(text, position);
+        skipSpace(text, position);
+        if (!(value instanceof Map) || position[0] != text.length()) {
+            throw new IllegalArgumentException("Expected a single JSON object");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> object = (Map<String, Object>) value;
+        return object;
+    }
+
+    // Parses the value starting at position[0], advancing it past the value
+    private static Object parseValue(String text, int[] position) {
+        skipSpace(text, position);
+        if (position[0] >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        char c = text.charAt(position[0]);
+        if (c == '{') {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position[0]++;
+            skipSpace(text, position);
+            if (peek(text, position) == '}') {
+                position[0]++;
+                return object;
+            }
+            while (true) {
+                skipSpace(text, position);
+                Object key = parseValue(text, position);
+                if (!(key instanceof String)) {
+                    throw new IllegalArgumentException("Expected a string key at " + position[0]);
+                }
+                skipSpace(text, position);
+                expect(text, position, ':');
+                object.put((String) key, parseValue(text, position));
+                skipSpace(text, position);
+                if (peek(text, position) == ',') {
+                    position[0]++;
+                } else {
+                    expect(text, position, '}');
+                    return object;
+                }
+            }
+        }
+        if (c == '[') {
+            List<Object> array = new ArrayList<>();
+            position[0]++;
+            skipSpace(text, position);
+            if (peek(text, position) == ']') {
+                position[0]++;
+                return array;
+            }
+            while (true) {
+                array.add(parseValue(text, position));
+                skipSpace(text, position);
+                if (peek(text, position) == ',') {
+                    position[0]++;
+                } else {
+                    expect(text, position, ']');
+                    return array;
+                }
+            }
+        }
+        if (c == '"') {
+            StringBuilder string = new StringBuilder();
+            position[0]++;
+            while (position[0] < text.length() && text.charAt(position[0]) != '"') {
+                char next = text.charAt(position[0]++);
+                if (next == '\\' && position[0] < text.length()) {
+                    char escaped = text.charAt(position[0]++);
+                    if (escaped == 'u' && position[0] + 4 <= text.length()) {
+                        string.append((char) Integer.parseInt(text.substring(position[0], position[0] + 4), 16));
+                        position[0] += 4;
+                    } else {
+                        string.append(escaped == 'n' ? '\n' : escaped == 't' ? '\t' : escaped == 'r' ? '\r' : escaped);
+                    }
+                } else {
+                    string.append(next);
+                }
+            }
+            expect(text, position, '"');
+            return string.toString();
+        }
+        for (String literal : new String[] {"true", "false", "null"}) {
+            if (text.startsWith(literal, position[0])) {
+                position[0] += literal.length();
+                return literal.equals("null") ? null : Boolean.valueOf(literal);
+            }
+        }
+        int start = position[0];
+        while (position[0] < text.length() && "+-0123456789.eE".indexOf(text.charAt(position[0])) >= 0) {
+            position[0]++;
+        }
+        try {
+            return Double.valueOf(text.substring(start, position[0]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unexpected character at " + start);
+        }
+    }
+
+    private static void skipSpace(String text, int[] position) {
+        while (position[0] < text.length() && Character.isWhitespace(text.charAt(position[0]))) {
+            position[0]++;
+        }
+    }
+
+    private static char peek(String text, int[] position) {
+        return position[0] < text.length() ? text.charAt(position[0]) : 0;
+    }
+
+    private static void expect(String text, int[] position, char c) {
+        if (peek(text, position) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at " + position[0]);
+        }
+        position[0]++;
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Serves the API on the loopback interface of the given port until the
+    // process is stopped.
+    //
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+        SchedulerConfig config = SchedulerConfig.current();
+        System.out.println(config + "\n");
+
+        OptimizationServer service = new OptimizationServer(config.workers);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/jobs", service::handle);
+        server.setExecutor(Executors.newFixedThreadPool(HANDLER_THREADS));
+        server.start();
+        System.out.println("Optimization server listening on http://localhost:" + port + "/jobs");
+    }
+}
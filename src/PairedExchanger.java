@@ -0,0 +1,95 @@
+import java.util.concurrent.Exchanger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	PairedExchanger
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Exchanges floor maps between workers along a deterministic partner schedule instead of a single
+// shared Exchanger, which pairs whoever arrives and leaves the last worker of an odd count (or the
+// partner of a dead worker) waiting forever.
+//
+// The schedule is a round robin tournament (circle method): in every round each worker has exactly
+// one partner, and over workers - 1 rounds (workers rounds if odd) every worker meets every other.
+// With an odd number of workers one worker sits out each round. Every pair of a round exchanges
+// through its own Exchanger, and each offer is tagged with its round so a late worker can never be
+// mistaken for the partner of a later round.
+//
+// exchange returns null, instead of blocking, when the worker sits out, the partner does not arrive
+// within the timeout, or the partner belongs to another round. The caller then recombines with a
+// map of its own.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class PairedExchanger {
+
+    // A map offered in a given round
+    private static class Offer {
+        final int round;
+        final int[][] map;
+
+        Offer(int round, int[][] map) {
+            this.round = round;
+            this.map = map;
+        }
+    }
+
+    private final int workers;						// Number of workers taking part
+    private final Exchanger<Offer>[] exchangers;	// One Exchanger per pair, indexed by the lower worker
+
+    @SuppressWarnings("unchecked")
+    public PairedExchanger(int workers) {
+        this.workers = workers;
+        this.exchangers = (Exchanger<Offer>[]) new Exchanger<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            exchangers[i] = new Exchanger<>();
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // partner
+    //----------------------------------------------------------------------
+    // Returns the partner of worker (0 based) in the given round, or -1 if
+    // the worker sits out the round.
+    //
+
+    public static int partner(int worker, int round, int workers) {
+        // An odd number of workers plays against a dummy worker
+        int slots = workers % 2 == 0 ? workers : workers + 1;
+        if (slots < 2) {
+            return -1;
+        }
+        int rounds = slots - 1;
+        int r = Math.floorMod(round, rounds);
+        int partner;
+        if (worker == slots - 1) {
+            partner = r;
+        } else if (worker == r) {
+            partner = slots - 1;
+        } else {
+            partner = Math.floorMod(2 * r - worker, rounds);
+        }
+        return partner >= workers ? -1 : partner;
+    }
+
+    //----------------------------------------------------------------------
+    // exchange
+    //----------------------------------------------------------------------
+    // Hands map to the scheduled partner of worker in round and returns the
+    // partner's map, or null if no map of the same round arrived in time.
+    //
+
+    public int[][] exchange(int worker, int round, int[][] map, long timeout, TimeUnit unit) throws InterruptedException {
+        int partner = partner(worker, round, workers);
+        if (partner < 0) {
+            return null;
+        }
+        try {
+            Offer received = exchangers[Math.min(worker, partner)].exchange(new Offer(round, map), timeout, unit);
+            return received.round == round ? received.map : null;
+        } catch (TimeoutException e) {
+            return null;
+        }
+    }
+}
@@ -1,9 +1,13 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
-import java.util.concurrent.Exchanger;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Phaser;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.swing.SwingUtilities;
@@ -68,54 +72,161 @@ import javax.swing.SwingUtilities;
 // -----------------------------------------------------------------------------------------------------------------------------------------------------------------
 public class ParallelGeneticAlgorithm implements Runnable {
 	
-    private final static int ROWS = 8;							// Number of rows within floor plan grid / integer array representation
-    private final static int COLUMNS = 8;						// Number of columns within floor plan grid / integer array representation
-    private final static int STATIONS = 48;						// Number of stations required to be a valid floor plan
-    private final static int TYPES = 3;							// Types of stations, including empty.
-    private final static int ITERATIONS = 32;					// Number of iterations for each parallel task to run through (32-100)
-    private final static int MUTATION_RATE = 10;				// Mutation rate of each randomly generated map (1 in MUTATION_RATE chance of mutation.)
-    private final static double SAME_ADJACENT_WEIGHT = -0.5;	// Negative affinity of same stations near each other
-    private final static double DIFFERENT_ADJACENT_WEIGHT = 2;	// Positive affinity of different stations near each other
+    final static int ROWS = 8;									// Number of rows within floor plan grid / integer array representation
+    final static int COLUMNS = 8;								// Number of columns within floor plan grid / integer array representation
+    final static int STATIONS = 48;								// Number of stations required to be a valid floor plan
+    final static int TYPES = 3;									// Types of stations, including empty.
+    final static int ITERATIONS = 32;							// Number of iterations for each parallel task to run through (32-100)
+    final static int MUTATION_RATE = 10;						// Mutation rate of each randomly generated map (1 in MUTATION_RATE chance of mutation.)
+    final static double SAME_ADJACENT_WEIGHT = -0.5;			// Negative affinity of same stations near each other
+    final static double DIFFERENT_ADJACENT_WEIGHT = 2;			// Positive affinity of different stations near each other
+    private final static int EXCHANGE_TIMEOUT = 500;			// Milliseconds to wait for the partner thread before recombining alone
+    private final static int SYNC_TIMEOUT = 2000;				// Milliseconds to wait for the other threads at each synchronization point
     private final static int SLEEP = 500;						// Length of time in milliseconds for thread sleep (delay) between each repaint of GUI
     
+    // Largest distance at which stations affect each other (-Daffinity.radius=N)
+    final static int AFFINITY_RADIUS = Integer.getInteger("affinity.radius", 1);
+    
     // Lock used for synchronization of threads
     private static Lock lock = new ReentrantLock();
     
-    // Blocking queue used to pool all outputs of mapData before drawing to GUI
-    private static BlockingQueue<int[][]> mapDataPool = new LinkedBlockingQueue<>();
+    // Blocking queue used to pool all outputs of mapData before drawing to GUI, as changes to the
+    // floor of the thread that produced them
+    private static BlockingQueue<FloorDiff> mapDataPool = new LinkedBlockingQueue<>();
+    
+    // Paired exchangers used to swap partial solutions with the scheduled partner thread
+    private final static PairedExchanger mapExchange;
+    
+    // Shape of the factory floor, rectangular unless a mask file is given
+    static FloorMask floorMask = FloorMask.full(ROWS, COLUMNS);
+    
+    // Floor mask of the job running on the current thread, overriding floorMask (see OptimizationJob)
+    private final static ThreadLocal<FloorMask> jobMask = new ThreadLocal<>();
+    
+    // Fully usable masks handed out by maskFor for maps of other sizes, by rows << 32 | columns
+    private final static Map<Long, FloorMask> fullMasks = new ConcurrentHashMap<>();
+    
+    // Number of worker threads, the available cores unless overridden by -Dworkers
+    static int numCores = SchedulerConfig.current().workers;
+    
+    // Initialize Phaser with numCores parties, each thread deregisters when it ends
+    private final static Phaser phaser;
+    
+    static {
+        mapExchange = new PairedExchanger(numCores);
+        phaser = new Phaser(numCores);
+    }
+    
+    // Result file receiving the best map of every iteration, if -Dresults.file is set
+    private static ResultWriter results;
+    
+    // Worker threads started by main, and whether they were asked to stop early
+    private static volatile Thread[] workers = new Thread[0];
+    private static volatile boolean stopping = false;
+    
+    // Index of this thread, used to find its exchange partner and recorded
+    // as the island of each result
+    private final int id;
+    
+    // Phase timings of this thread, only recorded with -Dprofile=true
+    private final PhaseProfiler.Recorder profile = new PhaseProfiler.Recorder();
+    
+    // Map of this thread last pooled for the GUI. Cells are written as the
+    // thread changes them, so pooling only publishes the journaled changes
+    private final VersionedFloor floor;
+    
+    public ParallelGeneticAlgorithm(int id) {
+        this.id = id;
+        this.floor = new VersionedFloor(id, floorMask.rows, floorMask.columns);
+    }
+	
+    //----------------------------------------------------------------------
+    // loadFloorMask
+    //----------------------------------------------------------------------
+    // Replaces the rectangular ROWS by COLUMNS floor with the shape loaded
+    // from the given text or image file. Must be called before any thread
+    // is started.
+    //
+    
+    static void loadFloorMask(String path) throws IOException {
+        FloorMask mask = FloorMask.load(Paths.get(path));
+        if (mask.usableCount < STATIONS) {
+            throw new IllegalArgumentException("Floor mask " + path + " has " + mask.usableCount + " usable cells, at least " + STATIONS + " are required");
+        }
+        floorMask = mask;
+    }
     
-    // Exchanger used to swap partial solutions with between threads
-    private final static Exchanger<int[][]> mapExchange = new Exchanger<>();
+    //----------------------------------------------------------------------
+    // currentMask
+    //----------------------------------------------------------------------
+    // Returns the floor mask of the job running on this thread, or the
+    // floor mask of the application if there is none.
+    //
+    
+    static FloorMask currentMask() {
+        FloorMask mask = jobMask.get();
+        return mask != null ? mask : floorMask;
+    }
+    
+    //----------------------------------------------------------------------
+    // setJobMask
+    //----------------------------------------------------------------------
+    // Makes the given mask the floor of this thread until it is reset with
+    // null, so jobs with different floors can share worker threads.
+    //
+    
+    static void setJobMask(FloorMask mask) {
+        if (mask != null) {
+            jobMask.set(mask);
+        } else {
+            jobMask.remove();
+        }
+    }
     
-    // Detect the number of CPU cores (threads) available
-    private static int numCores = Runtime.getRuntime().availableProcessors();
+    //----------------------------------------------------------------------
+    // maskFor
+    //----------------------------------------------------------------------
+    // Returns the floor mask if it matches the dimensions of the given map,
+    // otherwise a fully usable mask of the same size as the map. Full masks
+    // are built once per size, with their neighbor index.
+    //
     
-    // Initialize CyclicBarrier of size numCores
-    private final static CyclicBarrier barrier = new CyclicBarrier(numCores);
+    static FloorMask maskFor(int[][] map) {
+        FloorMask mask = currentMask();
+        if (mask.matches(map)) {
+            return mask;
+        }
+        return fullMasks.computeIfAbsent((long) map.length << 32 | map[0].length, size -> FloorMask.full(map.length, map[0].length));
+    }
 	
     //----------------------------------------------------------------------
     // generateRandomFloorMap
     //----------------------------------------------------------------------
-    // Creates a random 2-dimensional integer array of size ROWS by COLUMNS
-    // containing either 0 (empty), 1 (station type1), or 2 (station type2).
+    // Creates a random 2-dimensional integer array the size of the floor mask
+    // containing either 0 (empty), 1 (station type1), or 2 (station type2)
+    // on every usable cell. Unusable cells are always left as 0.
+    // Exactly STATIONS usable cells, chosen uniformly (a partial shuffle, so
+    // no cell is favoured by its position), get a station of either type.
     //
     
     public static int[][] generateRandomFloorMap() {
-        int[][] array = new int[ROWS][COLUMNS];
-        int stationCount = 0;
-            while (stationCount < STATIONS) {
-                for (int i = 0; i < ROWS; i++) {
-                    for (int j = 0; j < COLUMNS; j++) {
-                        if (array[i][j] == 0 && stationCount < STATIONS) {
-                            int randomValue = ThreadLocalRandom.current().nextInt(TYPES);
-                            array[i][j] = randomValue;
-                            if (randomValue == 1 || randomValue == 2) {
-                                stationCount++;
-                            }
-                        }
-                    }
-                }
-            }
+        FloorMask mask = currentMask();
+        if (mask.usableCount < STATIONS) {
+            throw new IllegalStateException("The floor has " + mask.usableCount + " usable cells for " + STATIONS + " stations");
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[][] array = new int[mask.rows][mask.columns];
+        int[] cells = new int[mask.usableCount];
+        for (int c = 0; c < cells.length; c++) {
+            cells[c] = c;
+        }
+        for (int n = 0; n < STATIONS; n++) {
+            // Pick one of the cells not chosen yet
+            int k = n + random.nextInt(cells.length - n);
+            int c = cells[k];
+            cells[k] = cells[n];
+            array[mask.cellRow[c]][mask.cellCol[c]] = random.nextInt(2) + 1;
+        }
         return array;
     }    
     
@@ -128,68 +239,52 @@ public class ParallelGeneticAlgorithm implements Runnable {
     // 
     
     public static double calculateAffinity(int[][] map) {
-        int rows = map.length;
-        int cols = map[0].length;
-
+        return calculateAffinity(map, maskFor(map));
+    }
+    
+    //----------------------------------------------------------------------
+    // calculateAffinity
+    //----------------------------------------------------------------------
+    // Calculates the affinity of a floor map by walking the precomputed
+    // neighbor index of the given mask for AFFINITY_RADIUS, so only usable
+    // cells and their usable neighbors are ever visited.
+    //
+    
+    public static double calculateAffinity(int[][] map, FloorMask mask) {
+        NeighborIndex index = mask.neighbors(AFFINITY_RADIUS);
         double affinity = 0.0;
-
-        // For each row within the array
-        for (int i = 0; i < rows; i++) {
-        	
-        	// For each column within each row
-            for (int j = 0; j < cols; j++) {
-            	
-            	// Set current to map at index [i][j]
-                int current = map[i][j];
-                
-                // Check the upper neighboring cell for same number adjacency
-                if (i > 0 && map[i - 1][j] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check the lower neighboring cell for same number adjacency
-                if (i < rows - 1 && map[i + 1][j] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check the left neighboring cell for same number adjacency
-                if (j > 0 && map[i][j - 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check the right neighboring cell for same number adjacency
-                if (j < cols - 1 && map[i][j + 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-
-                // Check upper left diagonally adjacent cell for same number adjacency
-                if (i > 0 && j > 0 && map[i - 1][j - 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check upper right diagonally adjacent cell for same number adjacency
-                if (i > 0 && j < cols - 1 && map[i - 1][j + 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check lower left diagonally adjacent cell for same number adjacency
-                if (i < rows - 1 && j > 0 && map[i + 1][j - 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check lower right diagonally adjacent cell for same number adjacency
-                if (i < rows - 1 && j < cols - 1 && map[i + 1][j + 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-
-                // Check for type1 close to type2
-                if (current == 1) {
-                	// for each cell around the current
-                    for (int x = -1; x <= 1; x++) {
-                        for (int y = -1; y <= 1; y++) {
-                            int ni = i + x;
-                            int nj = j + y;
-                            // Check if the neighboring cell is within bounds and contains a 2
-                            if (ni >= 0 && ni < rows && nj >= 0 && nj < cols && map[ni][nj] == 2) {
-                                affinity += DIFFERENT_ADJACENT_WEIGHT;
-                            }
-                        }
-                    }
-                }
+        
+        // For each usable cell of the floor
+        for (int c = 0; c < mask.usableCount; c++) {
+            affinity += cellAffinity(map, index, c);
+        }
+        return affinity;
+    }
+    
+    //----------------------------------------------------------------------
+    // cellAffinity
+    //----------------------------------------------------------------------
+    // Calculates the affinity the c-th usable cell of the index gains from
+    // each of its neighbors, weighted by their distance.
+    //
+    
+    static double cellAffinity(int[][] map, NeighborIndex index, int c) {
+        double affinity = 0.0;
+        
+        // Set current to the station type of the usable cell
+        int current = map[index.cellRow[c]][index.cellCol[c]];
+        
+        // For each usable neighbor of the current cell
+        for (int k = index.offsets[c]; k < index.offsets[c + 1]; k++) {
+            int neighbor = map[index.neighborRow[k]][index.neighborCol[k]];
+            
+            // Same number adjacency
+            if (neighbor == current) {
+                affinity += SAME_ADJACENT_WEIGHT * index.weight[k];
+            }
+            // Type1 close to type2
+            else if (current == 1 && neighbor == 2) {
+                affinity += DIFFERENT_ADJACENT_WEIGHT * index.weight[k];
             }
         }
         return affinity;
@@ -199,19 +294,25 @@ public class ParallelGeneticAlgorithm implements Runnable {
     // mutate
     //----------------------------------------------------------------------
     // Performs a genetic algorithm operation to mutate an existing map by
-    // randomly selecting one 2-dimensional integer array element and changing
-    // it to a 1 or 2 randomly if it is a 0, or swapping between 1 and 2.
+    // randomly selecting one usable 2-dimensional integer array element and
+    // changing it to a 1 or 2 randomly if it is a 0, or swapping between 1 and 2.
     //
     
-    private static int[][] mutate(int[][] array) {
+    static int[][] mutate(int[][] array) {
+    	mutateCell(array);
+    	return array;
+    }
+    
+    // Mutates the array as mutate does and returns the usable cell number of the changed element
+    static int mutateCell(int[][] array) {
     	
-    	// Gather row and column lengths from incoming array
-    	int rows = array.length;
-    	int columns = array[0].length;
+    	// Gather the usable cells of the incoming array
+    	FloorMask mask = maskFor(array);
     	
-    	// Select random row and column from array to mutate
-    	int mutationRow = ThreadLocalRandom.current().nextInt(rows);
-    	int mutationColumn = ThreadLocalRandom.current().nextInt(columns);
+    	// Select random usable row and column from array to mutate
+    	int cell = ThreadLocalRandom.current().nextInt(mask.usableCount);
+    	int mutationRow = mask.cellRow[cell];
+    	int mutationColumn = mask.cellCol[cell];
     	
     	// Mutate selected array element
     	if (array[mutationRow][mutationColumn] == 0) {
@@ -223,7 +324,7 @@ public class ParallelGeneticAlgorithm implements Runnable {
     	else if (array[mutationRow][mutationColumn] == 2) {
     		array[mutationRow][mutationColumn] = 1;
     	}
-		return array;	
+		return cell;
     }
     
     
@@ -231,10 +332,11 @@ public class ParallelGeneticAlgorithm implements Runnable {
     // crossover
     //----------------------------------------------------------------------
     // Performs a genetic algorithm operation to create a new map by
-    // combining two parent maps.
+    // combining two parent maps. Unusable cells are 0 in both parents and
+    // therefore stay 0 in the child.
     //
     
-    public int[][] crossover(int[][] parent1, int[][] parent2) {
+    public static int[][] crossover(int[][] parent1, int[][] parent2) {
     	
     	// Initialize new Map childMap as a clone of parent1
         int[][] childMap = new int[parent1.length][parent1[0].length];
@@ -271,13 +373,27 @@ public class ParallelGeneticAlgorithm implements Runnable {
     }
     
 
+    //----------------------------------------------------------------------
+    // copyMap
+    //----------------------------------------------------------------------
+    // Returns a deep copy of a 2-dimensional integer array.
+    //
+    
+    static int[][] copyMap(int[][] map) {
+        int[][] copy = new int[map.length][];
+        for (int i = 0; i < map.length; i++) {
+            copy[i] = map[i].clone();
+        }
+        return copy;
+    }
+    
     //----------------------------------------------------------------------
     // printArray
     //----------------------------------------------------------------------
     // Prints a 2-dimensional integer array to console.
     //
     
-    private static void printArray(int[][] array) {
+    static void printArray(int[][] array) {
         for (int[] row : array) {
             for (int value : row) {
                 System.out.print(value + " ");
@@ -302,24 +418,59 @@ public class ParallelGeneticAlgorithm implements Runnable {
     //
     
     public void run() {
+        try {
+            runIterations();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        } catch (TimeoutException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            // Leave the phaser so the remaining threads never wait on this one
+            phaser.arriveAndDeregister();
+            profile.finish();
+        }
+    }
+    
+    //----------------------------------------------------------------------
+    // runIterations
+    //----------------------------------------------------------------------
+    // Runs ITERATIONS iterations of the floor map genetic algorithm. Each
+    // iteration exchanges with the partner thread scheduled by mapExchange,
+    // waiting at most EXCHANGE_TIMEOUT milliseconds. If there is no partner
+    // (odd number of threads, or the partner is late or dead) the map is
+    // recombined with this thread's map of the previous iteration instead.
+    //
+    
+    private void runIterations() throws InterruptedException, TimeoutException {
+        // Map of the previous iteration, used when no partner is available
+        int[][] previousMap = null;
+        
 		// Generate and print random arrays for the specified number of iterations
-        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+        for (int iteration = 0; iteration < ITERATIONS && !stopping; iteration++) {
         	
 	    	// Generate randomized integer array
+	    	profile.begin(PhaseProfiler.Phase.GENERATE);
 	    	int[][] randomArray = generateRandomFloorMap();
+	    	profile.end();
             
 	        // Randomize mutationChance with an integer between 0 and 10 (inclusive) (1/10 chance of mutation)
 	        int mutationGene = ThreadLocalRandom.current().nextInt(MUTATION_RATE);
 	        
         	// Calculate affinity of array
+            profile.begin(PhaseProfiler.Phase.EVALUATE);
             double affinity = calculateAffinity(randomArray);
+            profile.end();
             
-            // Add initial floor map to mapDataPool
-            mapDataPool.add(randomArray);
+            // Add initial floor map to mapDataPool, every cell of a new map is written
+            floor.assign(randomArray);
+            pool();
                
 	        try {
 	        	// Lock the thread synchronization lock for synchronized output from each thread
+	        	profile.begin(PhaseProfiler.Phase.LOCK);
 	        	lock.lock();	         
+	        	profile.end();
+	        	profile.begin(PhaseProfiler.Phase.OUTPUT);
 	        	
 	        	// Print out current thread and iteration
 	            System.out.print(Thread.currentThread().getName() + " - Iteration " + (iteration + 1) + " : Affinity: " + affinity);
@@ -328,13 +479,21 @@ public class ParallelGeneticAlgorithm implements Runnable {
 	            if (mutationGene == 0) {
 	            	
 	            	// Mutate the array
-	                randomArray = mutate(randomArray);
+	                profile.begin(PhaseProfiler.Phase.MUTATE);
+	                int cell = mutateCell(randomArray);
+	                profile.end();
+	                
+	                // Only the mutated cell changes on the pooled floor
+	                FloorMask mask = maskFor(randomArray);
+	                floor.set(mask.cellRow[cell], mask.cellCol[cell], randomArray[mask.cellRow[cell]][mask.cellCol[cell]]);
 	                
 	                // Recalculate affinity of the array
+	                profile.begin(PhaseProfiler.Phase.EVALUATE);
 	                affinity = calculateAffinity(randomArray);
+	                profile.end();
 	                
 	                // Add mutated floor map to mapDataPool
-	                mapDataPool.add(randomArray);
+	                pool();
 	                
 	                // Display on the console that a mutation occurred and the new affinity value
 	                System.out.print(" <<< Mutation Occurred! Post-Mutation Affinity : " + affinity);
@@ -346,51 +505,138 @@ public class ParallelGeneticAlgorithm implements Runnable {
 	        } finally {
 	        	// Unlock the thread synchronization lock
 	        	lock.unlock();
+	        	profile.end();
 	        }
 
+			// Wait for all threads to arrive before exchanging map data
+			profile.begin(PhaseProfiler.Phase.BARRIER);
+			synchronize();
+			profile.end();
+			
+			// Exchange map data with this iteration's partner thread
+			profile.begin(PhaseProfiler.Phase.EXCHANGE);
+			int[][] exchangeMap = mapExchange.exchange(id - 1, iteration, randomArray, EXCHANGE_TIMEOUT, TimeUnit.MILLISECONDS);
+			profile.end();
+			
+			// Without a partner, recombine with this thread's previous map
+			if (exchangeMap == null) {
+				exchangeMap = previousMap != null ? previousMap : randomArray;
+			}
+			previousMap = randomArray;
+			
+			// Use crossover to produce child map from both parent maps
+			profile.begin(PhaseProfiler.Phase.CROSSOVER);
+			int[][] childMap = crossover(randomArray, exchangeMap);
+			profile.end();
+			
+			// Calculate affinity of child map if it is valid
+			profile.begin(PhaseProfiler.Phase.EVALUATE);
+			double childAffinity = childMap != null ? calculateAffinity(childMap) : Double.NEGATIVE_INFINITY;
+			profile.end();
+			
+			// Stream the best map of this iteration to the result file
+			if (results != null) {
+				profile.begin(PhaseProfiler.Phase.RESULTS);
+				if (childAffinity > affinity) {
+					writeResult(iteration, childMap, childAffinity);
+				} else {
+					writeResult(iteration, randomArray, affinity);
+				}
+				profile.end();
+			}
+			
 			try {
-				// Wait for all threads to arrive before exchanging map data
-				barrier.await();
-				
-				// Exchange map data between threads
-				int[][] exchangeMap = mapExchange.exchange(randomArray);
-				
-				// Use crossover to produce child map from both parent maps
-				int[][] childMap = crossover(randomArray, exchangeMap);
+				// Lock the thread synchronization lock for synchronized output
+				profile.begin(PhaseProfiler.Phase.LOCK);
+				lock.lock();
+				profile.end();
+				profile.begin(PhaseProfiler.Phase.OUTPUT);
 				
-				try {
-					// Lock the thread synchronization lock for synchronized output
-					lock.lock();
+				// If child map is valid
+				if (childMap != null) {
+					profile.begin(PhaseProfiler.Phase.EVALUATE);
+					double parent2Affinity = calculateAffinity(exchangeMap);
+					profile.end();
+					// Display crossover message and affinity onto console
+					System.out.println("Crossover : Parent1 Affinity: " + affinity + " - Parent2 Affinity: " + parent2Affinity + " - Child Affinity: " + childAffinity);
 					
-					// If child map is valid
-					if (childMap != null) {
-						// Calculate affinity of child map
-						double childAffinity = calculateAffinity(childMap);
-						double parent2Affinity = calculateAffinity(exchangeMap);
-						// Display crossover message and affinity onto console
-						System.out.println("Crossover : Parent1 Affinity: " + affinity + " - Parent2 Affinity: " + parent2Affinity + " - Child Affinity: " + childAffinity);
-						
-						// Add child floor map data to mapDataPool
-						mapDataPool.add(childMap);
-					}
-					// Else child map is not valid
-					else {
-						// Display that child map is not valid on the console
-						//System.out.println("Child map not valid");
-					}
-				} finally {
-					// Unlock the thread synchronization lock
-					lock.unlock();
+					// Add child floor map data to mapDataPool, the top half is the pooled
+					// randomArray so only the bottom half taken from exchangeMap is written
+					floor.assignRows(childMap, childMap.length / 2, childMap.length);
+					pool();
 				}
-				// Await for all threads to reach this point for synchronized crossover output
-				barrier.await();
-				
-			} catch (InterruptedException | BrokenBarrierException e) {
-				e.printStackTrace();
-			}		
+				// Else child map is not valid
+				else {
+					// Display that child map is not valid on the console
+					//System.out.println("Child map not valid");
+				}
+			} finally {
+				// Unlock the thread synchronization lock
+				lock.unlock();
+				profile.end();
+			}
+			// Await for all threads to reach this point for synchronized crossover output
+			profile.begin(PhaseProfiler.Phase.BARRIER);
+			synchronize();
+			profile.end();
         }            
     }
     
+    //----------------------------------------------------------------------
+    // pool
+    //----------------------------------------------------------------------
+    // Adds the cells of this thread's floor written since the previous call
+    // to mapDataPool. Each thread publishes its own floor in order, so no
+    // lock is needed, and a map changed in place later is still displayed
+    // as it was when pooled.
+    //
+    
+    private void pool() {
+        mapDataPool.add(floor.publish());
+    }
+    
+    //----------------------------------------------------------------------
+    // synchronize
+    //----------------------------------------------------------------------
+    // Waits up to SYNC_TIMEOUT milliseconds for every registered thread to
+    // arrive. Threads that ended have deregistered and are not waited for.
+    // A thread that hangs cannot be skipped: carrying on would count the
+    // next arrival in the phase that never advanced and leave every later
+    // phase off by one. On a timeout the phaser is therefore terminated,
+    // which releases every waiting thread, and the run fails with a
+    // TimeoutException on each of them.
+    //
+    
+    private static void synchronize() throws InterruptedException, TimeoutException {
+        int phase = phaser.arrive();
+        try {
+            // A negative phase means another thread already terminated the phaser
+            if (phase >= 0) {
+                phase = phaser.awaitAdvanceInterruptibly(phase, SYNC_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            phaser.forceTermination();
+            throw new TimeoutException(Thread.currentThread().getName() + " waited " + SYNC_TIMEOUT + " ms for the other threads, stopping the run");
+        }
+        if (phase < 0) {
+            throw new TimeoutException(Thread.currentThread().getName() + " stopped, the run failed at a synchronization timeout");
+        }
+    }
+    
+    //----------------------------------------------------------------------
+    // writeResult
+    //----------------------------------------------------------------------
+    // Appends the best map of an iteration of this thread to the result file.
+    //
+    
+    private void writeResult(int iteration, int[][] map, double affinity) {
+        try {
+            results.write(iteration + 1, id, affinity, map);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
     //----------------------------------------------------------------------
     // main
     //----------------------------------------------------------------------
@@ -399,16 +645,48 @@ public class ParallelGeneticAlgorithm implements Runnable {
     // available cores within the system before outputting each of the
     // generated maps to a pool where they are drawn to the GUI for
     // SLEEP milliseconds each, closing after the last
-    // map within the pool is drawn.
+    // map within the pool is drawn. An optional first argument names a
+    // floor mask file describing the shape of the floor, and the best map of
+    // every iteration is streamed to the file named by -Dresults.file.
     //
     
-	public static void main(String[] args) {
-		// Display number of available cores onto console {
-        System.out.println("Number of available cores: " + numCores + "\n");
+	public static void main(String[] args) throws IOException {
+		// Load the floor shape if a mask file is given
+		if (args.length > 0) {
+			loadFloorMask(args[0]);
+		}
+		
+		// Open the result file, flushed when the application exits once the workers have stopped
+		results = ResultWriter.fromProperty();
+		if (results != null) {
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				stopping = true;
+				try {
+					for (Thread worker : workers) {
+						worker.join(SYNC_TIMEOUT + EXCHANGE_TIMEOUT);
+					}
+					results.close();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}));
+		}
+		
+		// Print the phase breakdown on exit when profiling (-Dprofile=true)
+		PhaseProfiler.reportAtExit();
+		
+		// Display the worker threads and their NUMA layout onto console
+        System.out.println(SchedulerConfig.current() + "\n");
 
         // Create and start a thread for each core
+        Thread[] threads = new Thread[numCores];
         for (int core = 0; core < numCores; core++) {
-            Thread thread = new Thread(new ParallelGeneticAlgorithm(), "Thread " + (core + 1));
+            threads[core] = new Thread(new ParallelGeneticAlgorithm(core + 1), "Thread " + (core + 1));
+        }
+        workers = threads;
+        for (Thread thread : threads) {
             thread.start();
         }
       
@@ -423,14 +701,14 @@ public class ParallelGeneticAlgorithm implements Runnable {
                     	// Sleep for half a second between redrawing new map data on GUI
                         Thread.sleep(SLEEP);
                         
-                        // Poll next map data array from mapDataPool blocking queue
-                        int[][] nextMapData = mapDataPool.poll();
+                        // Poll the changes of the next map from mapDataPool blocking queue
+                        FloorDiff nextMapData = mapDataPool.poll();
                         
                         // If next map data is not null
                         if (nextMapData != null) {
                         	
-                        	// Update map data
-                            mapGUI.updateMapData(nextMapData);
+                        	// Apply the changed cells to the displayed map
+                            mapGUI.applyDiff(nextMapData);
                             
                         // Else next map data is null
                         } else {
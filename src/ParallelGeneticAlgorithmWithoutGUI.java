@@ -1,9 +1,10 @@
+import java.io.IOException;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
-import java.util.concurrent.Exchanger;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Phaser;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -67,15 +68,12 @@ import java.util.concurrent.locks.ReentrantLock;
 // -----------------------------------------------------------------------------------------------------------------------------------------------------------------
 public class ParallelGeneticAlgorithmWithoutGUI implements Runnable {
 	
-    private final static int ROWS = 8;							// Number of rows within floor plan grid / integer array representation
-    private final static int COLUMNS = 8;						// Number of columns within floor plan grid / integer array representation
-    private final static int STATIONS = 48;						// Number of stations required to be a valid floor plan
-    private final static int TYPES = 3;							// Types of stations, including empty.
-    private final static int ITERATIONS = 32;					// Number of iterations for each parallel task to run through (32-100)
+    private final static int ITERATIONS = Integer.getInteger("iterations", 32);	// Number of iterations for each parallel task to run through (32-100)
     private final static int MUTATION_RATE = 10;				// Mutation rate of each randomly generated map (1 in MUTATION_RATE chance of mutation.)
-    private final static double SAME_ADJACENT_WEIGHT = -0.5;	// Negative affinity of same stations near each other
-    private final static double DIFFERENT_ADJACENT_WEIGHT = 2;	// Positive affinity of different stations near each other
+    private final static int EXCHANGE_TIMEOUT = 500;			// Milliseconds to wait for the partner thread before recombining alone
+    private final static int SYNC_TIMEOUT = 2000;				// Milliseconds to wait for the other threads at each synchronization point
     private final static int SLEEP = 500;						// Length of time in milliseconds for thread sleep (delay) between each repaint of GUI
+    private final static double TARGET = Double.parseDouble(System.getProperty("target", "Infinity"));	// Affinity whose first arrival is timed
     
     // Lock used for synchronization of threads
     private static Lock lock = new ReentrantLock();
@@ -83,190 +81,93 @@ public class ParallelGeneticAlgorithmWithoutGUI implements Runnable {
     // Blocking queue used to pool all outputs of mapData before drawing to GUI
     private static BlockingQueue<int[][]> mapDataPool = new LinkedBlockingQueue<>();
     
-    // Exchanger used to swap partial solutions with between threads
-    private final static Exchanger<int[][]> mapExchange = new Exchanger<>();
+    // Paired exchangers used to swap partial solutions with the scheduled partner thread
+    private final static PairedExchanger mapExchange;
     
-    // Detect the number of CPU cores (threads) available
-    private static int numCores = Runtime.getRuntime().availableProcessors();
+    // Number of worker threads, the available cores unless overridden by -Dworkers
+    private static int numCores = SchedulerConfig.current().workers;
     
-    // Initialize CyclicBarrier of size numCores
-    private final static CyclicBarrier barrier = new CyclicBarrier(numCores);
+    // Initialize Phaser with numCores parties, each thread deregisters when it ends
+    private final static Phaser phaser;
+    
+    // Index of this thread, used to find its exchange partner
+    private final int id;
+    
+    // Phase timings of this thread, only recorded with -Dprofile=true
+    private final PhaseProfiler.Recorder profile = new PhaseProfiler.Recorder();
+    
+    // Measurements of the whole run, created by main before the threads start
+    private static RunStats stats;
+    
+    private long evaluations = 0;								// Affinity evaluations of this thread
+    private long waitNanos = 0;									// Time this thread waited at synchronization points and exchanges
+    private double bestAffinity = Double.NEGATIVE_INFINITY;	// Highest affinity this thread evaluated
+    
+    public ParallelGeneticAlgorithmWithoutGUI(int id) {
+        this.id = id;
+    }
+    
+    static {
+        mapExchange = new PairedExchanger(numCores);
+        phaser = new Phaser(numCores);
+    }
 	
     //----------------------------------------------------------------------
     // generateRandomFloorMap
     //----------------------------------------------------------------------
-    // Creates a random 2-dimensional integer array of size ROWS by COLUMNS
-    // containing either 0 (empty), 1 (station type1), or 2 (station type2).
+    // Creates a random floor map, see ParallelGeneticAlgorithm.
     //
     
     public static int[][] generateRandomFloorMap() {
-        int[][] array = new int[ROWS][COLUMNS];
-        int stationCount = 0;
-            while (stationCount < STATIONS) {
-                for (int i = 0; i < ROWS; i++) {
-                    for (int j = 0; j < COLUMNS; j++) {
-                        if (array[i][j] == 0 && stationCount < STATIONS) {
-                            int randomValue = ThreadLocalRandom.current().nextInt(TYPES);
-                            array[i][j] = randomValue;
-                            if (randomValue == 1 || randomValue == 2) {
-                                stationCount++;
-                            }
-                        }
-                    }
-                }
-            }
-        return array;
+        return ParallelGeneticAlgorithm.generateRandomFloorMap();
     }    
     
     //----------------------------------------------------------------------
     // calculateAffinity
     //----------------------------------------------------------------------
-    // Calculates the affinity as a double for a given int[][] floor map by
-    // giving positive affinity for values of different adjacent values and
-    // giving negative affinity for similar adjacent values.
+    // Calculates the affinity of a floor map, see ParallelGeneticAlgorithm.
     // 
     
     public static double calculateAffinity(int[][] map) {
-        int rows = map.length;
-        int cols = map[0].length;
-
-        double affinity = 0.0;
-
-        // For each row within the array
-        for (int i = 0; i < rows; i++) {
-        	
-        	// For each column within each row
-            for (int j = 0; j < cols; j++) {
-            	
-            	// Set current to map at index [i][j]
-                int current = map[i][j];
-                
-                // Check the upper neighboring cell for same number adjacency
-                if (i > 0 && map[i - 1][j] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check the lower neighboring cell for same number adjacency
-                if (i < rows - 1 && map[i + 1][j] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check the left neighboring cell for same number adjacency
-                if (j > 0 && map[i][j - 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check the right neighboring cell for same number adjacency
-                if (j < cols - 1 && map[i][j + 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-
-                // Check upper left diagonally adjacent cell for same number adjacency
-                if (i > 0 && j > 0 && map[i - 1][j - 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check upper right diagonally adjacent cell for same number adjacency
-                if (i > 0 && j < cols - 1 && map[i - 1][j + 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check lower left diagonally adjacent cell for same number adjacency
-                if (i < rows - 1 && j > 0 && map[i + 1][j - 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-                // Check lower right diagonally adjacent cell for same number adjacency
-                if (i < rows - 1 && j < cols - 1 && map[i + 1][j + 1] == current) {
-                    affinity += SAME_ADJACENT_WEIGHT;
-                }
-
-                // Check for type1 close to type2
-                if (current == 1) {
-                	// for each cell around the current
-                    for (int x = -1; x <= 1; x++) {
-                        for (int y = -1; y <= 1; y++) {
-                            int ni = i + x;
-                            int nj = j + y;
-                            // Check if the neighboring cell is within bounds and contains a 2
-                            if (ni >= 0 && ni < rows && nj >= 0 && nj < cols && map[ni][nj] == 2) {
-                                affinity += DIFFERENT_ADJACENT_WEIGHT;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return affinity;
+        return ParallelGeneticAlgorithm.calculateAffinity(map);
     }
     
     //----------------------------------------------------------------------
     // mutate
     //----------------------------------------------------------------------
-    // Performs a genetic algorithm operation to mutate an existing map by
-    // randomly selecting one 2-dimensional integer array element and changing
-    // it to a 1 or 2 randomly if it is a 0, or swapping between 1 and 2.
+    // Mutates one usable cell of a floor map, see ParallelGeneticAlgorithm.
     //
     
     private static int[][] mutate(int[][] array) {
-    	
-    	// Gather row and column lengths from incoming array
-    	int rows = array.length;
-    	int columns = array[0].length;
-    	
-    	// Select random row and column from array to mutate
-    	int mutationRow = ThreadLocalRandom.current().nextInt(rows);
-    	int mutationColumn = ThreadLocalRandom.current().nextInt(columns);
-    	
-    	// Mutate selected array element
-    	if (array[mutationRow][mutationColumn] == 0) {
-    		array[mutationRow][mutationColumn] = ThreadLocalRandom.current().nextInt(2) + 1;
-    	}
-    	else if (array[mutationRow][mutationColumn] == 1) {
-    		array[mutationRow][mutationColumn] = 2;
-    	}
-    	else if (array[mutationRow][mutationColumn] == 2) {
-    		array[mutationRow][mutationColumn] = 1;
-    	}
-		return array;	
+		return ParallelGeneticAlgorithm.mutate(array);	
     }
     
     
+    //----------------------------------------------------------------------
+    // evaluate
+    //----------------------------------------------------------------------
+    // Calculates the affinity of a floor map, counting the evaluation and
+    // reporting the map to stats when it is this thread's best so far.
+    //
+    
+    private double evaluate(int[][] map) {
+        double affinity = calculateAffinity(map);
+        evaluations++;
+        if (affinity > bestAffinity) {
+            bestAffinity = affinity;
+            stats.reportBest(map, affinity);
+        }
+        return affinity;
+    }
+    
     //----------------------------------------------------------------------
     // crossover
     //----------------------------------------------------------------------
-    // Performs a genetic algorithm operation to create a new map by
-    // combining two parent maps.
+    // Combines two parent maps, see ParallelGeneticAlgorithm.
     //
     
     public int[][] crossover(int[][] parent1, int[][] parent2) {
-    	
-    	// Initialize new Map childMap as a clone of parent1
-        int[][] childMap = new int[parent1.length][parent1[0].length];
-        
-        for (int i = 0; i < parent1.length / 2; i++) {
-            for (int j = 0; j < parent1[0].length; j++) {
-                childMap[i][j] = parent1[i][j];
-            }
-        }
-        
-        // Use second (bottom) half of parent2
-        for (int i = childMap.length / 2; i < childMap.length; i++) {
-            for (int j = 0; j < childMap[0].length; j++) {
-                childMap[i][j] = parent2[i][j];                
-            }
-        }
-        // Validate child map
-        int childStations = 0;
-        for (int i = 0; i < childMap.length; i++) {
-            for (int j = 0; j < childMap[0].length; j++) {
-                if (childMap[i][j] == 1 || childMap[i][j] == 2) {
-                	childStations++;
-                }
-            }
-        }
-        // If child map has required number of stations
-    	if (childStations == STATIONS) {
-    		// Return valid child map
-    		return childMap;
-    	} else {
-    		// If child map isn't valid, return null
-    		return null;
-    	}
+        return ParallelGeneticAlgorithm.crossover(parent1, parent2);
     }
     
 
@@ -299,21 +200,56 @@ public class ParallelGeneticAlgorithmWithoutGUI implements Runnable {
     //
     
     public void run() {
+        try {
+            runIterations();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        } catch (TimeoutException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            // Leave the phaser so the remaining threads never wait on this one
+            phaser.arriveAndDeregister();
+            profile.finish();
+            stats.add(evaluations, waitNanos);
+        }
+    }
+    
+    //----------------------------------------------------------------------
+    // runIterations
+    //----------------------------------------------------------------------
+    // Runs ITERATIONS iterations of the floor map genetic algorithm. Each
+    // iteration exchanges with the partner thread scheduled by mapExchange,
+    // waiting at most EXCHANGE_TIMEOUT milliseconds. If there is no partner
+    // (odd number of threads, or the partner is late or dead) the map is
+    // recombined with this thread's map of the previous iteration instead.
+    //
+    
+    private void runIterations() throws InterruptedException, TimeoutException {
+        // Map of the previous iteration, used when no partner is available
+        int[][] previousMap = null;
+        
 		// Generate and print random arrays for the specified number of iterations
         for (int iteration = 0; iteration < ITERATIONS; iteration++) {
         	
 	    	// Generate randomized integer array
+	    	profile.begin(PhaseProfiler.Phase.GENERATE);
 	    	int[][] randomArray = generateRandomFloorMap();
+	    	profile.end();
             
 	        // Randomize mutationChance with an integer between 0 and 10 (inclusive) (1/10 chance of mutation)
 	        int mutationGene = ThreadLocalRandom.current().nextInt(MUTATION_RATE);
 	        
         	// Calculate affinity of array
-            double affinity = calculateAffinity(randomArray);
+            profile.begin(PhaseProfiler.Phase.EVALUATE);
+            double affinity = evaluate(randomArray);
+            profile.end();
                
 	        try {
 	        	// Lock the thread synchronization lock for synchronized output from each thread
+	        	profile.begin(PhaseProfiler.Phase.LOCK);
 	        	lock.lock();	         
+	        	profile.end();
+	        	profile.begin(PhaseProfiler.Phase.OUTPUT);
 	        	
 	        	// Print out current thread and iteration
 	            System.out.print(Thread.currentThread().getName() + " - Iteration " + (iteration + 1) + " : Affinity: " + affinity);
@@ -322,10 +258,14 @@ public class ParallelGeneticAlgorithmWithoutGUI implements Runnable {
 	            if (mutationGene == 0) {
 	            	
 	            	// Mutate the array
+	                profile.begin(PhaseProfiler.Phase.MUTATE);
 	                randomArray = mutate(randomArray);
+	                profile.end();
 	                
 	                // Recalculate affinity of the array
-	                affinity = calculateAffinity(randomArray);
+	                profile.begin(PhaseProfiler.Phase.EVALUATE);
+	                affinity = evaluate(randomArray);
+	                profile.end();
 	                
 	                // Display on the console that a mutation occurred and the new affinity value
 	                System.out.print(" <<< Mutation Occurred! Post-Mutation Affinity : " + affinity);
@@ -337,65 +277,136 @@ public class ParallelGeneticAlgorithmWithoutGUI implements Runnable {
 	        } finally {
 	        	// Unlock the thread synchronization lock
 	        	lock.unlock();
+	        	profile.end();
 	        }
 
+			// Wait for all threads to arrive before exchanging map data
+			profile.begin(PhaseProfiler.Phase.BARRIER);
+			synchronize();
+			profile.end();
+			
+			// Exchange map data with this iteration's partner thread
+			profile.begin(PhaseProfiler.Phase.EXCHANGE);
+			long exchangeStart = System.nanoTime();
+			int[][] exchangeMap = mapExchange.exchange(id - 1, iteration, randomArray, EXCHANGE_TIMEOUT, TimeUnit.MILLISECONDS);
+			waitNanos += System.nanoTime() - exchangeStart;
+			profile.end();
+			
+			// Without a partner, recombine with this thread's previous map
+			if (exchangeMap == null) {
+				exchangeMap = previousMap != null ? previousMap : randomArray;
+			}
+			previousMap = randomArray;
+			
+			// Use crossover to produce child map from both parent maps
+			profile.begin(PhaseProfiler.Phase.CROSSOVER);
+			int[][] childMap = crossover(randomArray, exchangeMap);
+			profile.end();
+			
 			try {
-				// Wait for all threads to arrive before exchanging map data
-				barrier.await();
-				
-				// Exchange map data between threads
-				int[][] exchangeMap = mapExchange.exchange(randomArray);
+				// Lock the thread synchronization lock for synchronized output
+				profile.begin(PhaseProfiler.Phase.LOCK);
+				lock.lock();
+				profile.end();
+				profile.begin(PhaseProfiler.Phase.OUTPUT);
 				
-				// Use crossover to produce child map from both parent maps
-				int[][] childMap = crossover(randomArray, exchangeMap);
-				
-				try {
-					// Lock the thread synchronization lock for synchronized output
-					lock.lock();
-					
-					// If child map is valid
-					if (childMap != null) {
-						// Calculate affinity of child map
-						double childAffinity = calculateAffinity(childMap);
-						double parent2Affinity = calculateAffinity(exchangeMap);
-						// Display crossover message and affinity onto console
-						System.out.println("Crossover : Parent1 Affinity: " + affinity + " - Parent2 Affinity: " + parent2Affinity + " - Child Affinity: " + childAffinity);
-					}
-					// Else child map is not valid
-					else {
-						// Display that child map is not valid on the console
-						//System.out.println("Child map not valid");
-					}
-				} finally {
-					// Unlock the thread synchronization lock
-					lock.unlock();
+				// If child map is valid
+				if (childMap != null) {
+					// Calculate affinity of child map
+					profile.begin(PhaseProfiler.Phase.EVALUATE);
+					double childAffinity = evaluate(childMap);
+					double parent2Affinity = evaluate(exchangeMap);
+					profile.end();
+					// Display crossover message and affinity onto console
+					System.out.println("Crossover : Parent1 Affinity: " + affinity + " - Parent2 Affinity: " + parent2Affinity + " - Child Affinity: " + childAffinity);
 				}
-				// Await for all threads to reach this point for synchronized crossover output
-				barrier.await();
-				
-			} catch (InterruptedException | BrokenBarrierException e) {
-				e.printStackTrace();
-			}		
+				// Else child map is not valid
+				else {
+					// Display that child map is not valid on the console
+					//System.out.println("Child map not valid");
+				}
+			} finally {
+				// Unlock the thread synchronization lock
+				lock.unlock();
+				profile.end();
+			}
+			// Await for all threads to reach this point for synchronized crossover output
+			profile.begin(PhaseProfiler.Phase.BARRIER);
+			synchronize();
+			profile.end();
         }            
     }
     
+    //----------------------------------------------------------------------
+    // synchronize
+    //----------------------------------------------------------------------
+    // Waits up to SYNC_TIMEOUT milliseconds for every registered thread to
+    // arrive. Threads that ended have deregistered and are not waited for.
+    // A thread that hangs cannot be skipped: carrying on would count the
+    // next arrival in the phase that never advanced and leave every later
+    // phase off by one. On a timeout the phaser is therefore terminated,
+    // which releases every waiting thread, and the run fails with a
+    // TimeoutException on each of them. The time spent waiting is added to
+    // waitNanos.
+    //
+    
+    private void synchronize() throws InterruptedException, TimeoutException {
+        long start = System.nanoTime();
+        int phase = phaser.arrive();
+        try {
+            // A negative phase means another thread already terminated the phaser
+            if (phase >= 0) {
+                phase = phaser.awaitAdvanceInterruptibly(phase, SYNC_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            phaser.forceTermination();
+            throw new TimeoutException(Thread.currentThread().getName() + " waited " + SYNC_TIMEOUT + " ms for the other threads, stopping the run");
+        } finally {
+            waitNanos += System.nanoTime() - start;
+        }
+        if (phase < 0) {
+            throw new TimeoutException(Thread.currentThread().getName() + " stopped, the run failed at a synchronization timeout");
+        }
+    }
+    
     //----------------------------------------------------------------------
     // main
     //----------------------------------------------------------------------
     // Runs the floor map genetic algorithm across multiple threads in
     // parallel where the number of threads is equal on the number of
     // available cores within the system before outputting each of the
-    // generated maps data to the console.
+    // generated maps data to the console. An optional first argument names
+    // a floor mask file describing the shape of the floor. With
+    // -Dbenchmark.summary=true the statistics of the run are printed as a
+    // last line for ScalingBenchmark, which runs this solver once per
+    // worker count (-Dworkers, -Diterations, -Dtarget).
     //
     
-	public static void main(String[] args) {
-		// Display number of available cores onto console {
-        System.out.println("Number of available cores: " + numCores + "\n");
+	public static void main(String[] args) throws IOException, InterruptedException {
+		// Load the floor shape if a mask file is given
+		if (args.length > 0) {
+			ParallelGeneticAlgorithm.loadFloorMask(args[0]);
+		}
+		
+		// Print the phase breakdown on exit when profiling (-Dprofile=true)
+		PhaseProfiler.reportAtExit();
+		
+		// Display the worker threads and their NUMA layout onto console
+        System.out.println(SchedulerConfig.current() + "\n");
 
         // Create and start a thread for each core
+        stats = new RunStats(numCores, TARGET);
+        Thread[] threads = new Thread[numCores];
         for (int core = 0; core < numCores; core++) {
-            Thread thread = new Thread(new ParallelGeneticAlgorithmWithoutGUI(), "Thread " + (core + 1));
-            thread.start();
+            threads[core] = new Thread(new ParallelGeneticAlgorithmWithoutGUI(core + 1), "Thread " + (core + 1));
+            threads[core].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        stats.finish();
+        if (Boolean.getBoolean("benchmark.summary")) {
+            System.out.println(stats.summary());
         }
     }
 }
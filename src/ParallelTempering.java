@@ -0,0 +1,286 @@
+import java.util.concurrent.Exchanger;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	ParallelTempering
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Alternative solver to the genetic algorithms: replica exchange simulated annealing. Every worker
+// thread anneals one floor map at its own fixed temperature, from T_MIN on worker 0 to T_MAX on the
+// last worker (geometric spacing). Hot replicas roam the search space, cold replicas refine, and
+// neighbouring replicas swap configurations so good maps drift towards the cold end.
+//
+//	Each worker repeats, for the given number of sweeps:
+//	|
+//	Perform one sweep of usable cell count moves (SWAP, sometimes BLOCK_MOVE, which keep the
+//	station count) accepted by the Metropolis rule at the worker's temperature. The moves change
+//	the map in place and are evaluated incrementally (IncrementalAffinity)
+//	|
+//	Every SWAP_INTERVAL sweeps meet the neighbour of this round's pair and swap configurations
+//	with it or not (even pairs 0-1, 2-3, ... and odd pairs 1-2, 3-4, ... take turns)
+//
+// Both replicas of a pair stop at the same sweep and hand each other their current map, affinity
+// and round through the pair's Exchanger, so the swap is decided on the states they actually hold.
+// Only the lower replica draws the random number of the Metropolis test, min(1, exp((beta_i -
+// beta_j) * (A_j - A_i))), and sends it along; the upper replica evaluates the same test with it,
+// so both sides reach the same decision and either both take the other's map or both keep their
+// own. The maps change hands without copying, since neither side touches the map it gave away.
+// A partner that does not arrive within SWAP_TIMEOUT, or an offer from another round, makes both
+// sides skip the swap.
+//
+// With -Dtempering.swap=false the replicas never swap, which turns the solver into independent
+// multi-start annealing.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class ParallelTempering {
+
+    // The state a replica offers its partner in a swap round (immutable)
+    private static class Offer {
+        final int round;
+        final int[][] map;
+        final double affinity;
+        final double chance;
+
+        Offer(int round, int[][] map, double affinity, double chance) {
+            this.round = round;
+            this.map = map;
+            this.affinity = affinity;
+            this.chance = chance;
+        }
+    }
+
+    private final static int SWEEPS = 2000;								// Sweeps each replica runs by default
+    private final static int SWAP_INTERVAL = 10;						// Sweeps between swap attempts
+    private final static long SWAP_TIMEOUT = 10;						// Seconds a replica waits for its swap partner
+    private final static double T_MIN = Double.parseDouble(System.getProperty("tempering.tmin", "0.3"));	// Temperature of the coldest replica
+    private final static double T_MAX = Double.parseDouble(System.getProperty("tempering.tmax", "4"));		// Temperature of the hottest replica
+    private final static boolean SWAP = Boolean.parseBoolean(System.getProperty("tempering.swap", "true"));	// Whether replicas swap at all
+    private final static int BLOCK_MOVE_EVERY = 4;						// One in how many moves is a BLOCK_MOVE
+
+    private final int replicas;										// Number of replicas, one per worker
+    private final double[] temperature;								// Temperature of each replica
+    private final Exchanger<Offer>[] exchangers;					// Swap rendezvous of replica i and i + 1
+    private final AtomicLongArray swapAttempts;						// Swaps tried between replica i and i + 1
+    private final AtomicLongArray swapsAccepted;					// Swaps done between replica i and i + 1
+
+    @SuppressWarnings("unchecked")
+    public ParallelTempering(int replicas) {
+        this.replicas = replicas;
+        this.temperature = new double[replicas];
+        for (int i = 0; i < replicas; i++) {
+            temperature[i] = replicas == 1 ? T_MIN : T_MIN * Math.pow(T_MAX / T_MIN, (double) i / (replicas - 1));
+        }
+        this.exchangers = (Exchanger<Offer>[]) new Exchanger<?>[Math.max(1, replicas - 1)];
+        for (int i = 0; i < exchangers.length; i++) {
+            exchangers[i] = new Exchanger<>();
+        }
+        this.swapAttempts = new AtomicLongArray(Math.max(1, replicas - 1));
+        this.swapsAccepted = new AtomicLongArray(Math.max(1, replicas - 1));
+    }
+
+    //----------------------------------------------------------------------
+    // run
+    //----------------------------------------------------------------------
+    // Anneals one replica per worker for the given number of sweeps and
+    // returns the statistics of the run, including the global best map.
+    //
+
+    public RunStats run(int sweeps, double targetAffinity) throws InterruptedException {
+        RunStats stats = new RunStats(replicas, targetAffinity);
+        Thread[] threads = new Thread[replicas];
+        for (int replica = 0; replica < replicas; replica++) {
+            int id = replica;
+            threads[replica] = new Thread(() -> anneal(id, sweeps, stats), "Replica " + (replica + 1));
+            threads[replica].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        stats.finish();
+        return stats;
+    }
+
+    //----------------------------------------------------------------------
+    // anneal
+    //----------------------------------------------------------------------
+    // Runs on the worker thread of the given replica.
+    //
+
+    private void anneal(int replica, int sweeps, RunStats stats) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        FloorMask mask = ParallelGeneticAlgorithm.currentMask();
+        int moves = mask.usableCount;
+        double beta = 1.0 / temperature[replica];
+        long evaluations = 0;
+        long waitNanos = 0;
+
+        int[][] map = ParallelGeneticAlgorithm.generateRandomFloorMap();
+        IncrementalAffinity tracker = new IncrementalAffinity(mask, VariationOperator.BLOCK * VariationOperator.BLOCK);
+        tracker.reset(map);
+        evaluations++;
+        int[][] best = ParallelGeneticAlgorithm.copyMap(map);
+        double bestAffinity = tracker.affinity();
+        boolean targetReported = false;
+
+        for (int sweep = 1; sweep <= sweeps; sweep++) {
+            for (int move = 0; move < moves; move++) {
+                int pairs = random.nextInt(BLOCK_MOVE_EVERY) == 0 ? blockMove(tracker, mask, random) : swapMove(tracker, moves, random);
+                if (pairs == 0) {
+                    continue;
+                }
+                double delta = tracker.move(pairs);
+                evaluations++;
+
+                // Metropolis rule for maximizing affinity
+                if (delta >= 0 || random.nextDouble() < Math.exp(delta * beta)) {
+                    if (tracker.affinity() > bestAffinity) {
+                        best = ParallelGeneticAlgorithm.copyMap(map);
+                        bestAffinity = tracker.affinity();
+                        // Report early only for the time to target, the rest is reported at the end
+                        if (!targetReported && bestAffinity >= stats.targetAffinity) {
+                            stats.reportBest(best, bestAffinity);
+                            targetReported = true;
+                        }
+                    }
+                } else {
+                    tracker.undo();
+                }
+            }
+            if (!SWAP || replicas < 2 || sweep % SWAP_INTERVAL != 0) {
+                continue;
+            }
+
+            // Even pairs swap in even rounds, odd pairs in odd rounds
+            int round = sweep / SWAP_INTERVAL;
+            int partner = replica % 2 == round % 2 ? replica + 1 : replica - 1;
+            if (partner < 0 || partner >= replicas) {
+                continue;
+            }
+            long waitStart = System.nanoTime();
+            Offer theirs = swap(replica, partner, new Offer(round, map, tracker.affinity(), random.nextDouble()));
+            waitNanos += System.nanoTime() - waitStart;
+            if (theirs != null) {
+                map = theirs.map;
+                tracker.reset(map);
+                evaluations++;
+            }
+        }
+        stats.reportBest(best, bestAffinity);
+        stats.add(evaluations, waitNanos);
+    }
+
+    //----------------------------------------------------------------------
+    // swap
+    //----------------------------------------------------------------------
+    // Meets partner in the round of mine and returns the partner's offer if
+    // the pair swaps, or null if it keeps its maps. Both replicas of the pair
+    // reach the same decision, using the chance drawn by the lower one.
+    //
+
+    private Offer swap(int replica, int partner, Offer mine) {
+        int lower = Math.min(replica, partner);
+        Offer theirs;
+        try {
+            theirs = exchangers[lower].exchange(mine, SWAP_TIMEOUT, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // The partner is stuck or gone, its late offer will not match our next round
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (theirs.round != mine.round) {
+            return null;
+        }
+
+        // Accept with probability min(1, exp((beta_i - beta_j) * (A_j - A_i))), evaluated the same way on both sides
+        Offer low = replica == lower ? mine : theirs;
+        Offer high = replica == lower ? theirs : mine;
+        double exponent = (1.0 / temperature[lower] - 1.0 / temperature[lower + 1]) * (high.affinity - low.affinity);
+        boolean accepted = exponent >= 0 || low.chance < Math.exp(exponent);
+        if (replica == lower) {
+            swapAttempts.incrementAndGet(lower);
+            if (accepted) {
+                swapsAccepted.incrementAndGet(lower);
+            }
+        }
+        return accepted ? theirs : null;
+    }
+
+    // Sets up a SWAP of two usable cells holding different station types, trying a few times, and
+    // returns the number of pairs to swap (0 if none was found)
+    private static int swapMove(IncrementalAffinity tracker, int cells, ThreadLocalRandom random) {
+        for (int attempt = 0; attempt < 8; attempt++) {
+            int a = random.nextInt(cells);
+            int b = random.nextInt(cells);
+            if (tracker.value(a) != tracker.value(b)) {
+                tracker.pair(0, a, b);
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    // Sets up a BLOCK_MOVE, swapping the usable cells of two random BLOCK by BLOCK areas pair by
+    // pair like VariationOperator.BLOCK_MOVE, and returns the number of pairs
+    private static int blockMove(IncrementalAffinity tracker, FloorMask mask, ThreadLocalRandom random) {
+        int block = VariationOperator.BLOCK;
+        if (mask.rows < block || mask.columns < block) {
+            return 0;
+        }
+        int fromRow = random.nextInt(mask.rows - block + 1);
+        int fromCol = random.nextInt(mask.columns - block + 1);
+        int toRow = random.nextInt(mask.rows - block + 1);
+        int toCol = random.nextInt(mask.columns - block + 1);
+        int pairs = 0;
+        for (int i = 0; i < block; i++) {
+            for (int j = 0; j < block; j++) {
+                int a = tracker.cell(fromRow + i, fromCol + j);
+                int b = tracker.cell(toRow + i, toCol + j);
+                if (a >= 0 && b >= 0 && a != b) {
+                    tracker.pair(pairs++, a, b);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    //----------------------------------------------------------------------
+    // printSwapRates
+    //----------------------------------------------------------------------
+    // Prints the temperatures and the fraction of accepted swaps between
+    // each pair of neighbouring replicas.
+    //
+
+    private void printSwapRates() {
+        for (int i = 0; i < replicas - 1; i++) {
+            long attempts = swapAttempts.get(i);
+            System.out.println(String.format("Replicas %d-%d (T %.2f - %.2f): %d of %d swaps accepted", i + 1, i + 2,
+                    temperature[i], temperature[i + 1], swapsAccepted.get(i), attempts));
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Runs one replica per configured worker. An optional argument gives
+    // the number of sweeps.
+    //
+
+    public static void main(String[] args) throws InterruptedException {
+        SchedulerConfig config = SchedulerConfig.current();
+        System.out.println(config + "\n");
+
+        int sweeps = args.length > 0 ? Integer.parseInt(args[0]) : SWEEPS;
+        ParallelTempering tempering = new ParallelTempering(config.workers);
+        RunStats result = tempering.run(sweeps, Double.POSITIVE_INFINITY);
+
+        tempering.printSwapRates();
+        System.out.println("Global best affinity: " + result.bestAffinity() + " - Evaluations/s: " + (long) result.evaluationsPerSecond());
+        ParallelGeneticAlgorithm.printArray(result.bestMap());
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	ParetoSorter
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Fast non-dominated sorting and crowding distance (NSGA-II) over a population of objective
+// vectors where smaller values are better.
+//
+// The O(M * N^2) domination comparisons are split into contiguous chunks of the population and
+// handed to the workers of an ExecutorService. Each worker only writes to the slots of its own
+// chunk, so no locking is required. Front peeling is also done in parallel where each worker
+// decrements the shared domination counters of an AtomicIntegerArray and collects the
+// individuals that reach zero into its own list.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class ParetoSorter {
+
+    private final ExecutorService workers;		// Workers used for the parallel phases
+    private final int numWorkers;				// Number of chunks each phase is split into
+
+    public ParetoSorter(ExecutorService workers, int numWorkers) {
+        this.workers = workers;
+        this.numWorkers = Math.max(1, numWorkers);
+    }
+
+    //----------------------------------------------------------------------
+    // dominates
+    //----------------------------------------------------------------------
+    // Returns true if objective vector a is no worse than b in every
+    // objective and strictly better in at least one.
+    //
+
+    public static boolean dominates(double[] a, double[] b) {
+        boolean strictlyBetter = false;
+        for (int k = 0; k < a.length; k++) {
+            if (a[k] > b[k]) {
+                return false;
+            }
+            if (a[k] < b[k]) {
+                strictlyBetter = true;
+            }
+        }
+        return strictlyBetter;
+    }
+
+    //----------------------------------------------------------------------
+    // sort
+    //----------------------------------------------------------------------
+    // Splits the population into non-dominated fronts. The first front
+    // returned holds the indices of the Pareto optimal individuals, the
+    // second front those only dominated by the first, and so on.
+    //
+
+    public List<int[]> sort(double[][] objectives) throws InterruptedException {
+        int size = objectives.length;
+        AtomicIntegerArray dominationCount = new AtomicIntegerArray(size);
+        int[][] dominatedSets = new int[size][];
+
+        // Phase 1: each worker compares its chunk of individuals against the whole population
+        runChunks(size, (from, to) -> {
+            int[] buffer = new int[size];
+            for (int p = from; p < to; p++) {
+                int dominated = 0;
+                int count = 0;
+                for (int q = 0; q < size; q++) {
+                    if (dominates(objectives[p], objectives[q])) {
+                        buffer[dominated++] = q;
+                    } else if (dominates(objectives[q], objectives[p])) {
+                        count++;
+                    }
+                }
+                dominatedSets[p] = Arrays.copyOf(buffer, dominated);
+                dominationCount.set(p, count);
+            }
+            return null;
+        });
+
+        // First front holds every individual that nothing dominates
+        int[] front = new int[size];
+        int frontSize = 0;
+        for (int p = 0; p < size; p++) {
+            if (dominationCount.get(p) == 0) {
+                front[frontSize++] = p;
+            }
+        }
+        front = Arrays.copyOf(front, frontSize);
+
+        List<int[]> fronts = new ArrayList<>();
+
+        // Phase 2: peel off fronts, releasing the individuals dominated by the current front
+        while (front.length > 0) {
+            fronts.add(front);
+            int[] current = front;
+            List<int[]> parts = runChunks(current.length, (from, to) -> {
+                int[] next = new int[size];
+                int nextSize = 0;
+                for (int k = from; k < to; k++) {
+                    for (int q : dominatedSets[current[k]]) {
+                        if (dominationCount.decrementAndGet(q) == 0) {
+                            next[nextSize++] = q;
+                        }
+                    }
+                }
+                return Arrays.copyOf(next, nextSize);
+            });
+
+            // Merge the partial fronts found by each worker
+            int total = 0;
+            for (int[] part : parts) {
+                total += part.length;
+            }
+            front = new int[total];
+            int offset = 0;
+            for (int[] part : parts) {
+                System.arraycopy(part, 0, front, offset, part.length);
+                offset += part.length;
+            }
+        }
+        return fronts;
+    }
+
+    //----------------------------------------------------------------------
+    // crowdingDistance
+    //----------------------------------------------------------------------
+    // Calculates the crowding distance of every member of a single front.
+    // Boundary individuals of each objective receive an infinite distance
+    // so that they are always preferred when a front has to be truncated.
+    //
+
+    public static double[] crowdingDistance(double[][] objectives, int[] front) {
+        int size = front.length;
+        double[] distance = new double[size];
+        if (size <= 2) {
+            Arrays.fill(distance, Double.POSITIVE_INFINITY);
+            return distance;
+        }
+        Integer[] order = new Integer[size];
+        for (int objective = 0; objective < objectives[front[0]].length; objective++) {
+            final int k = objective;
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(objectives[front[a]][k], objectives[front[b]][k]));
+
+            double min = objectives[front[order[0]]][k];
+            double max = objectives[front[order[size - 1]]][k];
+            distance[order[0]] = Double.POSITIVE_INFINITY;
+            distance[order[size - 1]] = Double.POSITIVE_INFINITY;
+
+            // An objective without spread adds nothing to the distance
+            if (max == min) {
+                continue;
+            }
+            for (int i = 1; i < size - 1; i++) {
+                double gap = objectives[front[order[i + 1]]][k] - objectives[front[order[i - 1]]][k];
+                distance[order[i]] += gap / (max - min);
+            }
+        }
+        return distance;
+    }
+
+    //----------------------------------------------------------------------
+    // runChunks
+    //----------------------------------------------------------------------
+    // Splits the range [0, size) into at most numWorkers contiguous chunks,
+    // runs each chunk on the workers and waits for all of them to finish.
+    //
+
+    private <T> List<T> runChunks(int size, ChunkTask<T> task) throws InterruptedException {
+        List<T> results = new ArrayList<>();
+        if (size == 0) {
+            return results;
+        }
+        int chunks = Math.min(numWorkers, size);
+        List<Callable<T>> calls = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            int from = (int) ((long) size * c / chunks);
+            int to = (int) ((long) size * (c + 1) / chunks);
+            calls.add(() -> task.run(from, to));
+        }
+        for (Future<T> future : workers.invokeAll(calls)) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    // Work performed on a single chunk of the population
+    private interface ChunkTask<T> {
+        T run(int from, int to);
+    }
+}
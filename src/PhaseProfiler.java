@@ -0,0 +1,183 @@
+import java.util.Locale;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	PhaseProfiler
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Optional timing of the phases of the worker loop, enabled with -Dprofile=true.
+//
+//	Each worker thread owns a Recorder and brackets every phase with begin and end
+//	-Phases may nest (evaluation inside the locked output), the time of the inner phase is not
+//	 counted for the outer one, so the phase totals add up to the time spent in the loop
+//	-Every phase is also emitted as a PhaseEvent, shown per thread in JDK Mission Control when a
+//	 recording is running (-XX:StartFlightRecording=filename=run.jfr)
+//	|
+//	When the worker ends it adds its totals to the shared breakdown once, so threads never
+//	contend while running
+//	|
+//	The breakdown is printed when the application exits
+//
+// ENABLED is a static final constant, so with profiling disabled the JIT removes the calls to begin
+// and end entirely.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class PhaseProfiler {
+
+    // A timed part of the worker loop
+    enum Phase {
+        GENERATE,		// Generating a random floor map
+        EVALUATE,		// Calculating the affinity of a floor map
+        MUTATE,			// Mutating a floor map
+        CROSSOVER,		// Recombining two floor maps
+        EXCHANGE,		// Waiting for and swapping maps with the partner thread
+        BARRIER,		// Waiting for the other threads at a synchronization point
+        LOCK,			// Waiting for the output lock
+        OUTPUT,			// Printing and pooling maps while holding the output lock
+        RESULTS			// Streaming maps to the result file
+    }
+
+    // JFR event emitted for every timed phase
+    @Name("floorplan.Phase")
+    @Label("Worker Phase")
+    @Category("Floor Plan")
+    @Description("A phase of a floor map worker iteration")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+    }
+
+    final static boolean ENABLED = Boolean.getBoolean("profile");	// Whether phases are timed (-Dprofile=true)
+    private final static int MAX_DEPTH = 8;							// Deepest nesting of phases
+
+    private final static Phase[] PHASES = Phase.values();
+    private final static long[] totalNanos = new long[PHASES.length];	// Time of each phase over all finished workers
+    private final static long[] totalCalls = new long[PHASES.length];	// Times each phase ran over all finished workers
+    private static int workers = 0;										// Number of finished workers
+
+    //----------------------------------------------------------------------
+    // Recorder
+    //----------------------------------------------------------------------
+    // Phase timings of a single worker thread (not thread safe).
+    //
+
+    static class Recorder {
+        private final long[] nanos = new long[PHASES.length];		// Time of each phase, excluding nested phases
+        private final long[] calls = new long[PHASES.length];		// Times each phase ran
+        private final int[] stack = new int[MAX_DEPTH];				// Phases currently open
+        private final PhaseEvent[] events = new PhaseEvent[MAX_DEPTH];	// JFR event of each open phase
+        private int depth = 0;										// Number of open phases
+        private long mark;											// When the innermost open phase last resumed
+
+        //----------------------------------------------------------------------
+        // begin
+        //----------------------------------------------------------------------
+        // Starts timing a phase, pausing the phase it is nested in.
+        //
+
+        void begin(Phase phase) {
+            if (!ENABLED) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (depth > 0) {
+                nanos[stack[depth - 1]] += now - mark;
+            }
+            PhaseEvent event = new PhaseEvent();
+            event.begin();
+            events[depth] = event;
+            stack[depth++] = phase.ordinal();
+            calls[phase.ordinal()]++;
+            mark = now;
+        }
+
+        //----------------------------------------------------------------------
+        // end
+        //----------------------------------------------------------------------
+        // Stops timing the innermost open phase and resumes its parent.
+        //
+
+        void end() {
+            if (!ENABLED) {
+                return;
+            }
+            long now = System.nanoTime();
+            int phase = stack[--depth];
+            nanos[phase] += now - mark;
+            mark = now;
+
+            PhaseEvent event = events[depth];
+            events[depth] = null;
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = PHASES[phase].name();
+                event.commit();
+            }
+        }
+
+        //----------------------------------------------------------------------
+        // finish
+        //----------------------------------------------------------------------
+        // Adds the timings of this worker to the shared breakdown.
+        //
+
+        void finish() {
+            if (!ENABLED) {
+                return;
+            }
+            synchronized (PhaseProfiler.class) {
+                for (int p = 0; p < PHASES.length; p++) {
+                    totalNanos[p] += nanos[p];
+                    totalCalls[p] += calls[p];
+                }
+                workers++;
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // reportAtExit
+    //----------------------------------------------------------------------
+    // Prints the breakdown when the application exits, if profiling is
+    // enabled.
+    //
+
+    static void reportAtExit() {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(report())));
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // report
+    //----------------------------------------------------------------------
+    // Returns the time, share, calls and average duration of every phase
+    // over all finished workers.
+    //
+
+    static synchronized String report() {
+        long total = 0;
+        for (long nanos : totalNanos) {
+            total += nanos;
+        }
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%nPhase breakdown over %d worker(s):%n", workers));
+        report.append(String.format(Locale.ROOT, "%-10s %12s %7s %10s %12s%n", "Phase", "Total ms", "Share", "Calls", "Average us"));
+        for (int p = 0; p < PHASES.length; p++) {
+            if (totalCalls[p] == 0) {
+                continue;
+            }
+            report.append(String.format(Locale.ROOT, "%-10s %12.3f %6.1f%% %10d %12.3f%n", PHASES[p], totalNanos[p] / 1e6,
+                    total == 0 ? 0.0 : 100.0 * totalNanos[p] / total, totalCalls[p], totalNanos[p] / 1e3 / totalCalls[p]));
+        }
+        return report.toString();
+    }
+}
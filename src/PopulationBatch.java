@@ -0,0 +1,206 @@
+import java.util.Arrays;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	PopulationBatch
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Structure-of-arrays store of a population on one floor, for evaluating many small maps at once
+// (8x8 and 16x16 floors with large populations, where walking one int[][] at a time is dominated
+// by per-map overhead).
+//
+//	cells[c * capacity + n]		Station type of usable cell c of individual n, so the same cell of
+//								every individual is contiguous
+//
+// calculateAffinity walks the neighbor index once for the whole batch. For every link (c, neighbor)
+// it runs one branch-free loop over the individuals, counting same-type pairs and type 1 next to
+// type 2 pairs per ring. The loop only uses int loads, xor, or, shifts and adds on two contiguous
+// arrays, so HotSpot's superword pass compiles it to SIMD instructions filling every lane. The
+// counts are turned into affinities at the end, giving the same values as cellAffinity (exactly
+// for radius 1, within rounding for the 1 / ring weights beyond).
+//
+//	java PopulationBatch [rows] [columns] [population]		Compares per-map and batch evaluation
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class PopulationBatch {
+
+    private final static int ROUNDS = 20;		// Evaluations of the whole population timed by main
+
+    final FloorMask mask;					// Floor of every individual
+    final NeighborIndex index;				// Neighbors used by the affinity
+    final int capacity;						// Largest number of individuals
+    final int[] cells;						// Station types, cell major
+    private final int[] neighborCell;		// Usable cell number of each neighbor link
+    private final int[] ring;				// Ring (distance) of each neighbor link
+    private final int[][] same;				// Same-type pairs per ring and individual
+    private final int[][] different;		// Type 1 next to type 2 pairs per ring and individual
+    private int size = 0;					// Number of individuals stored
+
+    public PopulationBatch(FloorMask mask, int capacity) {
+        this.mask = mask;
+        this.index = mask.neighbors(ParallelGeneticAlgorithm.AFFINITY_RADIUS);
+        this.capacity = capacity;
+        this.cells = new int[mask.usableCount * capacity];
+
+        int[][] cellIndex = new int[mask.rows][mask.columns];
+        for (int c = 0; c < mask.usableCount; c++) {
+            cellIndex[mask.cellRow[c]][mask.cellCol[c]] = c;
+        }
+        this.neighborCell = new int[index.neighborRow.length];
+        this.ring = new int[index.neighborRow.length];
+        for (int c = 0; c < mask.usableCount; c++) {
+            for (int k = index.offsets[c]; k < index.offsets[c + 1]; k++) {
+                neighborCell[k] = cellIndex[index.neighborRow[k]][index.neighborCol[k]];
+                ring[k] = Math.max(Math.abs(index.neighborRow[k] - mask.cellRow[c]), Math.abs(index.neighborCol[k] - mask.cellCol[c]));
+            }
+        }
+        this.same = new int[index.radius + 1][capacity];
+        this.different = new int[index.radius + 1][capacity];
+    }
+
+    //----------------------------------------------------------------------
+    // add
+    //----------------------------------------------------------------------
+    // Stores a map as the next individual and returns its number.
+    //
+
+    public int add(int[][] map) {
+        if (size == capacity) {
+            throw new IllegalStateException("Batch is full (" + capacity + " individuals)");
+        }
+        set(size, map);
+        return size++;
+    }
+
+    // Replaces individual n with a map
+    public void set(int n, int[][] map) {
+        for (int c = 0; c < mask.usableCount; c++) {
+            cells[c * capacity + n] = map[mask.cellRow[c]][mask.cellCol[c]];
+        }
+    }
+
+    // Returns individual n as a map
+    public int[][] get(int n) {
+        int[][] map = new int[mask.rows][mask.columns];
+        for (int c = 0; c < mask.usableCount; c++) {
+            map[mask.cellRow[c]][mask.cellCol[c]] = cells[c * capacity + n];
+        }
+        return map;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    //----------------------------------------------------------------------
+    // calculateAffinity
+    //----------------------------------------------------------------------
+    // Returns the affinity of every stored individual, in the order they
+    // were added.
+    //
+
+    public double[] calculateAffinity() {
+        return calculateAffinity(new double[size]);
+    }
+
+    // As above, writing the affinities into the given array
+    public double[] calculateAffinity(double[] affinity) {
+        int n = size;
+        for (int r = 1; r <= index.radius; r++) {
+            Arrays.fill(same[r], 0, n, 0);
+            Arrays.fill(different[r], 0, n, 0);
+        }
+
+        for (int c = 0; c < mask.usableCount; c++) {
+            int base = c * capacity;
+            for (int k = index.offsets[c]; k < index.offsets[c + 1]; k++) {
+                countPairs(cells, base, neighborCell[k] * capacity, same[ring[k]], different[ring[k]], n);
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            double sum = 0.0;
+            for (int r = 1; r <= index.radius; r++) {
+                double weight = 1.0 / r;
+                sum += ParallelGeneticAlgorithm.SAME_ADJACENT_WEIGHT * weight * same[r][i]
+                        + ParallelGeneticAlgorithm.DIFFERENT_ADJACENT_WEIGHT * weight * different[r][i];
+            }
+            affinity[i] = sum;
+        }
+        return affinity;
+    }
+
+    // Counts, for individuals 0 to n - 1, whether the cell at base has the same type as the neighbor
+    // at neighborBase, and whether it is type 1 next to type 2. Kept free of branches and calls so
+    // the loop vectorizes: (x | -x) >>> 31 is 0 for x == 0 and 1 otherwise.
+    private static void countPairs(int[] cells, int base, int neighborBase, int[] same, int[] different, int n) {
+        for (int i = 0; i < n; i++) {
+            int current = cells[base + i];
+            int neighbor = cells[neighborBase + i];
+            int equal = current ^ neighbor;
+            int oneTwo = (current ^ 1) | (neighbor ^ 2);
+            same[i] += ((equal | -equal) >>> 31) ^ 1;
+            different[i] += ((oneTwo | -oneTwo) >>> 31) ^ 1;
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Evaluates a random population map by map and as a batch, prints the
+    // evaluations per second of both and checks that they agree.
+    //
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int columns = args.length > 1 ? Integer.parseInt(args[1]) : rows;
+        int population = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+
+        FloorMask mask = FloorMask.full(rows, columns);
+        ParallelGeneticAlgorithm.setJobMask(mask);
+        int[][][] maps = new int[population][][];
+        PopulationBatch batch = new PopulationBatch(mask, population);
+        for (int n = 0; n < population; n++) {
+            maps[n] = ParallelGeneticAlgorithm.generateRandomFloorMap();
+            batch.add(maps[n]);
+        }
+        ParallelGeneticAlgorithm.setJobMask(null);
+
+        double[] single = new double[population];
+        double[] batched = new double[population];
+        for (int warmup = 0; warmup < ROUNDS; warmup++) {
+            for (int n = 0; n < population; n++) {
+                single[n] = ParallelGeneticAlgorithm.calculateAffinity(maps[n], mask);
+            }
+            batch.calculateAffinity(batched);
+        }
+
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int n = 0; n < population; n++) {
+                single[n] = ParallelGeneticAlgorithm.calculateAffinity(maps[n], mask);
+            }
+        }
+        long singleTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            batch.calculateAffinity(batched);
+        }
+        long batchTime = System.nanoTime() - start;
+
+        int mismatches = 0;
+        for (int n = 0; n < population; n++) {
+            if (Math.abs(single[n] - batched[n]) > 1e-9 * Math.max(1.0, Math.abs(single[n]))) {
+                mismatches++;
+            }
+        }
+        double evaluations = (double) ROUNDS * population;
+        System.out.println(String.format("%dx%d floor, %d maps: per map %.0f evaluations/s, batch %.0f evaluations/s (%.1fx), %d mismatches",
+                rows, columns, population, evaluations * 1e9 / singleTime, evaluations * 1e9 / batchTime,
+                (double) singleTime / batchTime, mismatches));
+    }
+}
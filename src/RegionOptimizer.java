@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	RegionOptimizer
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Re-optimizes an existing layout after a small change, searching only a rectangular region of the
+// floor and keeping every other cell as it is.
+//
+//	Load the layout, and optionally a new floor mask; stations on cells the new mask closes are
+//	taken off the floor and placed on free cells of the region (or, if it has none left, on free
+//	cells elsewhere, which then join the region)
+//	|
+//	On every worker, anneal the region with swaps of two region cells (which may move a station
+//	onto a free cell), each evaluated from the cached contributions of the untouched area
+//	(IncrementalAffinity)
+//	|
+//	Keep the best layout of all workers, print it, and save it to -Dlayout.out if set
+//
+//	java RegionOptimizer layout.txt firstRow firstColumn lastRow lastColumn [newMask]
+//	-Dregion.steps=N		Moves per worker
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class RegionOptimizer {
+
+    private final static int STEPS = Integer.getInteger("region.steps", 100000);	// Moves per worker
+    private final static double START_TEMPERATURE = 2.0;		// Temperature of the first move
+    private final static double END_TEMPERATURE = 0.02;			// Temperature of the last move
+
+    private final FloorMask mask;			// Floor of the layout
+    private final int[] region;				// Usable cells that may change
+    private final int[][] start;			// Layout the search starts from
+
+    public RegionOptimizer(int[][] layout, FloorMask mask, int firstRow, int firstColumn, int lastRow, int lastColumn) {
+        this.mask = mask;
+        List<Integer> cells = new ArrayList<>();
+        for (int c = 0; c < mask.usableCount; c++) {
+            int i = mask.cellRow[c];
+            int j = mask.cellCol[c];
+            if (i >= firstRow && i <= lastRow && j >= firstColumn && j <= lastColumn) {
+                cells.add(c);
+            }
+        }
+        if (cells.size() < 2) {
+            throw new IllegalArgumentException("The region holds " + cells.size() + " usable cells, at least 2 are required");
+        }
+        this.start = relocate(layout, cells);
+        this.region = cells.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Copies the layout, moving stations off cells the mask does not allow onto free cells of the
+    // region, or onto free cells elsewhere which then join the region
+    private int[][] relocate(int[][] layout, List<Integer> region) {
+        int[][] map = new int[mask.rows][mask.columns];
+        List<Integer> displaced = new ArrayList<>();
+        for (int i = 0; i < mask.rows; i++) {
+            for (int j = 0; j < mask.columns; j++) {
+                if (mask.isUsable(i, j)) {
+                    map[i][j] = layout[i][j];
+                } else if (layout[i][j] != 0) {
+                    displaced.add(layout[i][j]);
+                }
+            }
+        }
+        for (int c : region) {
+            if (!displaced.isEmpty() && map[mask.cellRow[c]][mask.cellCol[c]] == 0) {
+                map[mask.cellRow[c]][mask.cellCol[c]] = displaced.remove(displaced.size() - 1);
+            }
+        }
+        for (int c = 0; c < mask.usableCount && !displaced.isEmpty(); c++) {
+            if (map[mask.cellRow[c]][mask.cellCol[c]] == 0 && !region.contains(c)) {
+                map[mask.cellRow[c]][mask.cellCol[c]] = displaced.remove(displaced.size() - 1);
+                region.add(c);
+            }
+        }
+        if (!displaced.isEmpty()) {
+            throw new IllegalArgumentException(displaced.size() + " displaced stations do not fit on the free cells of the floor");
+        }
+        return map;
+    }
+
+    //----------------------------------------------------------------------
+    // anneal
+    //----------------------------------------------------------------------
+    // Anneals a copy of the starting layout for the given number of moves
+    // and returns the best layout found.
+    //
+
+    int[][] anneal(int steps) {
+        return anneal(steps, new double[1]);
+    }
+
+    // Anneals as above, also storing the incrementally tracked affinity of the best layout in
+    // trackedAffinity[0] (checked against a full evaluation by EvaluatorOracle)
+    int[][] anneal(int steps, double[] trackedAffinity) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[][] map = ParallelGeneticAlgorithm.copyMap(start);
+        IncrementalAffinity tracker = new IncrementalAffinity(mask, 1);
+        tracker.reset(map);
+        int[][] best = ParallelGeneticAlgorithm.copyMap(map);
+        double bestAffinity = tracker.affinity();
+
+        for (int step = 1; step <= steps; step++) {
+            double temperature = START_TEMPERATURE * Math.pow(END_TEMPERATURE / START_TEMPERATURE, (double) step / steps);
+            int a = region[random.nextInt(region.length)];
+            int b = region[random.nextInt(region.length)];
+            if (tracker.value(a) == tracker.value(b)) {
+                continue;
+            }
+            double delta = tracker.swap(a, b);
+            if (delta >= 0 || random.nextDouble() < Math.exp(delta / temperature)) {
+                if (tracker.affinity() > bestAffinity + 1e-9) {
+                    bestAffinity = tracker.affinity();
+                    best = ParallelGeneticAlgorithm.copyMap(map);
+                }
+            } else {
+                tracker.undo();
+            }
+        }
+        trackedAffinity[0] = bestAffinity;
+        return best;
+    }
+
+    //----------------------------------------------------------------------
+    // optimize
+    //----------------------------------------------------------------------
+    // Anneals the region on the given number of workers and returns the
+    // best layout of all of them.
+    //
+
+    public int[][] optimize(int workers, int steps) throws InterruptedException {
+        int[][][] results = new int[workers][][];
+        Thread[] threads = new Thread[workers];
+        for (int worker = 0; worker < workers; worker++) {
+            int id = worker;
+            threads[worker] = new Thread(() -> results[id] = anneal(steps), "Region " + (worker + 1));
+            threads[worker].start();
+        }
+        int[][] best = start;
+        double bestAffinity = ParallelGeneticAlgorithm.calculateAffinity(start, mask);
+        for (int worker = 0; worker < workers; worker++) {
+            threads[worker].join();
+            double affinity = ParallelGeneticAlgorithm.calculateAffinity(results[worker], mask);
+            if (affinity > bestAffinity) {
+                best = results[worker];
+                bestAffinity = affinity;
+            }
+        }
+        return best;
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Arguments: layout file, the inclusive corners of the region, and an
+    // optional new floor mask.
+    //
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 5) {
+            System.out.println("Usage: java RegionOptimizer <layout> <firstRow> <firstColumn> <lastRow> <lastColumn> [newMask]");
+            return;
+        }
+        int[][] layout = LayoutFile.load(Paths.get(args[0]));
+        FloorMask mask = args.length > 5 ? FloorMask.load(Paths.get(args[5])) : FloorMask.full(layout.length, layout[0].length);
+        if (!mask.matches(layout)) {
+            throw new IOException("Layout is " + layout.length + "x" + layout[0].length + ", the floor is " + mask.rows + "x" + mask.columns);
+        }
+        ParallelGeneticAlgorithm.floorMask = mask;
+
+        long start = System.nanoTime();
+        RegionOptimizer optimizer = new RegionOptimizer(layout, mask,
+                Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+        System.out.println("Region of " + optimizer.region.length + " cells, starting affinity "
+                + ParallelGeneticAlgorithm.calculateAffinity(optimizer.start, mask));
+
+        int[][] best = optimizer.optimize(SchedulerConfig.current().workers, STEPS);
+        System.out.println("Re-optimized affinity " + ParallelGeneticAlgorithm.calculateAffinity(best, mask)
+                + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+        ParallelGeneticAlgorithm.printArray(best);
+
+        String out = System.getProperty("layout.out");
+        if (out != null) {
+            LayoutFile.save(Paths.get(out), best);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import javax.swing.SwingUtilities;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	ResultReader
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Reads the records written by ResultWriter one at a time through a buffered FileChannel. The
+// floor mask of the run is read from the header (files of version 1 have none, their floor is the
+// whole map).
+//
+//	java ResultReader run.pga					Prints a summary of every record
+//	java ResultReader run.pga --csv run.csv		Converts the records to CSV
+//	java ResultReader run.pga --replay			Replays the maps on MapGUI, SLEEP milliseconds each
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class ResultReader implements AutoCloseable {
+
+    private final static int BUFFER_SIZE = 1 << 16;	// Bytes read from the channel at a time
+    private final static int SLEEP = 500;			// Delay between maps when replaying in milliseconds
+
+    private final FileChannel channel;				// File the records are read from
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);	// Bytes read but not yet decoded
+    private final FloorMask mask;					// Floor of the run, null for a version 1 file
+
+    // A single record of a result file
+    public static class Record {
+        final int generation;				// Generation the map was the best of
+        final int island;					// Island (thread) that found the map
+        final double affinity;				// Affinity of the map
+        final int[][] map;					// The floor map
+
+        Record(int generation, int island, double affinity, int[][] map) {
+            this.generation = generation;
+            this.island = island;
+            this.affinity = affinity;
+            this.map = map;
+        }
+    }
+
+    public ResultReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        buffer.flip();
+        if (!fill(6) || buffer.getInt() != ResultWriter.MAGIC) {
+            channel.close();
+            throw new IOException(path + " is not a result file");
+        }
+        short version = buffer.getShort();
+        if (version != 1 && version != ResultWriter.VERSION) {
+            channel.close();
+            throw new IOException(path + " has unsupported version " + version);
+        }
+        mask = version == 1 ? null : readMask(path);
+    }
+
+    // Reads the floor mask of the header
+    private FloorMask readMask(Path path) throws IOException {
+        if (!fill(4)) {
+            channel.close();
+            throw new IOException(path + " has a truncated header");
+        }
+        int rows = buffer.getShort();
+        int columns = buffer.getShort();
+        if (rows < 1 || columns < 1 || !fill((rows * columns + 7) / 8)) {
+            channel.close();
+            throw new IOException(path + " has an invalid floor mask header");
+        }
+        boolean[][] usable = new boolean[rows][columns];
+        int start = buffer.position();
+        for (int cell = 0; cell < rows * columns; cell++) {
+            usable[cell / columns][cell % columns] = (buffer.get(start + cell / 8) & 1 << (cell % 8)) != 0;
+        }
+        buffer.position(start + (rows * columns + 7) / 8);
+        return new FloorMask(usable);
+    }
+
+    //----------------------------------------------------------------------
+    // mask
+    //----------------------------------------------------------------------
+    // Returns the floor mask of the run, or null if the file does not
+    // record it (version 1).
+    //
+
+    public FloorMask mask() {
+        return mask;
+    }
+
+    //----------------------------------------------------------------------
+    // next
+    //----------------------------------------------------------------------
+    // Returns the next record, or null at the end of the file.
+    //
+
+    public Record next() throws IOException {
+        // Generation, island, affinity and map dimensions
+        if (!fill(20)) {
+            return null;
+        }
+        int rows = buffer.getShort(buffer.position() + 16);
+        int columns = buffer.getShort(buffer.position() + 18);
+        if (!fill(16 + GenomeCodec.encodedSize(rows, columns))) {
+            throw new IOException("Truncated record at the end of the result file");
+        }
+        int generation = buffer.getInt();
+        int island = buffer.getInt();
+        double affinity = buffer.getDouble();
+        return new Record(generation, island, affinity, GenomeCodec.decode(buffer));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Makes sure at least count bytes are buffered, false at the end of the file
+    private boolean fill(int count) throws IOException {
+        if (buffer.remaining() >= count) {
+            return true;
+        }
+        if (count > buffer.capacity()) {
+            throw new IOException("Record of " + count + " bytes exceeds the " + buffer.capacity() + " byte read buffer");
+        }
+        buffer.compact();
+        while (buffer.position() < count) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    //----------------------------------------------------------------------
+    // writeCsv
+    //----------------------------------------------------------------------
+    // Converts every record to a line of generation,island,affinity,cells
+    // where cells lists each row of the map separated by '/'.
+    //
+
+    private static void writeCsv(Path input, Path output) throws IOException {
+        try (ResultReader reader = new ResultReader(input);
+                BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write("generation,island,affinity,cells");
+            writer.newLine();
+            for (Record record = reader.next(); record != null; record = reader.next()) {
+                StringBuilder line = new StringBuilder();
+                line.append(record.generation).append(',').append(record.island).append(',').append(record.affinity).append(',');
+                for (int i = 0; i < record.map.length; i++) {
+                    if (i > 0) {
+                        line.append('/');
+                    }
+                    for (int value : record.map[i]) {
+                        line.append(value);
+                    }
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // replay
+    //----------------------------------------------------------------------
+    // Draws every map of the file on MapGUI for SLEEP milliseconds each,
+    // the same way ParallelGeneticAlgorithm displays a live run, on the
+    // floor mask recorded in the file.
+    //
+
+    private static void replay(Path input) throws IOException {
+        ResultReader reader = new ResultReader(input);
+
+        // Draw the walls of the run's floor
+        if (reader.mask() != null) {
+            ParallelGeneticAlgorithm.floorMask = reader.mask();
+        }
+        Record first = reader.next();
+        if (first == null) {
+            reader.close();
+            System.out.println(input + " holds no records");
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            MapGUI mapGUI = new MapGUI(first.map);
+            mapGUI.setTitle("Generation " + first.generation + " Island " + first.island + " Affinity " + first.affinity);
+
+            // Create a separate thread to read the file and update the GUI
+            Thread updaterThread = new Thread(() -> {
+                try (reader) {
+                    for (Record record = reader.next(); record != null; record = reader.next()) {
+                        Thread.sleep(SLEEP);
+                        mapGUI.setTitle("Generation " + record.generation + " Island " + record.island + " Affinity " + record.affinity);
+                        mapGUI.updateMapData(record.map);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    e.printStackTrace();
+                }
+            });
+            updaterThread.start();
+        });
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Arguments: result file, then optionally --csv <file> or --replay.
+    //
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java ResultReader <file> [--csv <output> | --replay]");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        if (args.length > 2 && args[1].equals("--csv")) {
+            writeCsv(input, Paths.get(args[2]));
+        } else if (args.length > 1 && args[1].equals("--replay")) {
+            replay(input);
+        } else {
+            try (ResultReader reader = new ResultReader(input)) {
+                for (Record record = reader.next(); record != null; record = reader.next()) {
+                    System.out.println("Generation " + record.generation + " - Island " + record.island + " : Affinity: " + record.affinity);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	ResultWriter
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Streams the best floor map of each generation and island to a file so runs can be analyzed or
+// replayed afterwards (see ResultReader) instead of only being printed to the console.
+//
+//	int MAGIC | short VERSION											File header
+//	short rows | short columns | usable bits, row major, 8 per byte		Floor mask of the run
+//	int generation | int island | double affinity | GenomeCodec map		One record per call to write
+//
+// A solver thread only encodes its record and queues it. A dedicated writer thread collects the
+// queued records in a direct buffer and hands it to the FileChannel when it is full or the writer is
+// closed, so the solver threads do not wait on the disk as long as it keeps up. The queue holds at
+// most QUEUE_CAPACITY records: when the disk falls that far behind, write waits for the writer
+// thread, so a slow disk slows the solvers down instead of growing the memory without limit. The
+// writer may be shared by several threads; records larger than BUFFER_SIZE are rejected, as
+// ResultReader could not read them back.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class ResultWriter implements AutoCloseable {
+
+    final static int MAGIC = 0x50474152;			// "PGAR" at the start of every result file
+    final static short VERSION = 2;					// Version of the file layout, 1 had no floor mask
+    private final static int BUFFER_SIZE = 1 << 16;	// Bytes collected before writing to the channel
+    private final static int QUEUE_CAPACITY = 1024;	// Records queued before write waits for the writer thread
+    private final static long QUEUE_WAIT = 100;		// Milliseconds between checks on the writer thread while waiting
+
+    private final static ByteBuffer END = ByteBuffer.allocate(0);	// Queued by close after the last record
+
+    private final FileChannel channel;				// File the records are written to
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);	// Records not yet written, owned by writer
+    private final BlockingQueue<ByteBuffer> records = new ArrayBlockingQueue<>(QUEUE_CAPACITY);	// Encoded records waiting for writer
+    private final Thread writer;					// Thread writing the records to the channel
+    private boolean closed = false;					// Set by close, guarded by this
+    private volatile IOException failure;			// Error that stopped the writer thread
+
+    public ResultWriter(Path path, FloorMask mask) throws IOException {
+        int maskBytes = (mask.rows * mask.columns + 7) / 8;
+        if (10 + maskBytes > BUFFER_SIZE) {
+            throw new IOException("Floor mask of " + mask.rows + "x" + mask.columns + " exceeds the " + BUFFER_SIZE + " byte header limit");
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        buffer.putInt(MAGIC).putShort(VERSION);
+        buffer.putShort((short) mask.rows).putShort((short) mask.columns);
+        byte[] bits = new byte[maskBytes];
+        for (int i = 0; i < mask.rows; i++) {
+            for (int j = 0; j < mask.columns; j++) {
+                if (mask.isUsable(i, j)) {
+                    int cell = i * mask.columns + j;
+                    bits[cell / 8] |= 1 << (cell % 8);
+                }
+            }
+        }
+        buffer.put(bits);
+        writer = new Thread(this::writeRecords, "Result writer " + path.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    //----------------------------------------------------------------------
+    // fromProperty
+    //----------------------------------------------------------------------
+    // Opens a writer on the file named by the results.file system property
+    // (-Dresults.file=run.pga) for the floor of the calling thread, or
+    // returns null if it is not set.
+    //
+
+    public static ResultWriter fromProperty() throws IOException {
+        String file = System.getProperty("results.file");
+        return file == null ? null : new ResultWriter(Paths.get(file), ParallelGeneticAlgorithm.currentMask());
+    }
+
+    //----------------------------------------------------------------------
+    // write
+    //----------------------------------------------------------------------
+    // Appends the best floor map of a generation of an island. Returns as
+    // soon as the record is queued for the writer thread, waiting for room
+    // while QUEUE_CAPACITY records are queued.
+    //
+
+    public void write(int generation, int island, double affinity, int[][] map) throws IOException {
+        int size = 16 + GenomeCodec.encodedSize(map.length, map[0].length);
+        if (size > BUFFER_SIZE) {
+            throw new IOException("Record of " + size + " bytes exceeds the " + BUFFER_SIZE + " byte record limit");
+        }
+        ByteBuffer record = ByteBuffer.allocate(size);
+        record.putInt(generation).putInt(island).putDouble(affinity);
+        GenomeCodec.encode(map, record);
+        record.flip();
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Result writer is closed");
+            }
+            // Holding the monitor while waiting keeps close from queuing END before this record
+            try {
+                while (!records.offer(record, QUEUE_WAIT, TimeUnit.MILLISECONDS)) {
+                    if (failure != null) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the result writer");
+            }
+            if (failure != null) {
+                throw new IOException("Result writer failed", failure);
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // close
+    //----------------------------------------------------------------------
+    // Waits for the writer thread to write every queued record and closes
+    // the file. Records written after close are rejected.
+    //
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            // No write queues records any more, wait for room for END unless the writer thread stopped
+            while (failure == null && !records.offer(END, QUEUE_WAIT, TimeUnit.MILLISECONDS)) {
+                // The writer thread is still behind
+            }
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Runs on the writer thread, collecting queued records in the buffer until close
+    private void writeRecords() {
+        try {
+            for (ByteBuffer record = records.take(); record != END; record = records.take()) {
+                if (buffer.remaining() < record.remaining()) {
+                    drain();
+                }
+                buffer.put(record);
+            }
+            drain();
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new IOException("Result writer interrupted", e);
+        }
+    }
+
+    // Writes the whole buffer to the channel
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,137 @@
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	RunStats
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Measurements of a single solver run, filled in by the worker threads as they finish and read by
+// ScalingBenchmark. Workers keep their own counters while running and add them once at the end,
+// so collecting the statistics does not add contention to the hot loop.
+//
+// A solver running in its own JVM prints summary as its last line, which ScalingBenchmark reads
+// back with parseSummary (the best map itself is not carried over).
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class RunStats {
+
+    final static String SUMMARY = "RunStats";	// First word of a summary line
+
+    final int workers;							// Worker threads used by the run
+    final double targetAffinity;				// Affinity whose first arrival is timed
+    final long startNanos = System.nanoTime();	// When the run started
+
+    private long elapsedNanos;					// Duration of the whole run
+    private long evaluations;					// Affinity evaluations performed by all workers
+    private long waitNanos;						// Time workers spent waiting on exchanges or barriers
+    private boolean waitMeasured;				// Whether the solver measures waiting at all
+    private long timeToTargetNanos = -1;		// Time until targetAffinity was first reached, -1 if never
+    private double bestAffinity = Double.NEGATIVE_INFINITY;	// Highest affinity found
+    private int[][] bestMap;					// Map with bestAffinity
+
+    public RunStats(int workers, double targetAffinity) {
+        this.workers = workers;
+        this.targetAffinity = targetAffinity;
+    }
+
+    //----------------------------------------------------------------------
+    // add
+    //----------------------------------------------------------------------
+    // Adds the counters of a finished worker.
+    //
+
+    public synchronized void add(long workerEvaluations, long workerWaitNanos) {
+        evaluations += workerEvaluations;
+        waitNanos += workerWaitNanos;
+        waitMeasured = true;
+    }
+
+    // As above, for solvers that do not measure waiting
+    public synchronized void add(long workerEvaluations) {
+        evaluations += workerEvaluations;
+    }
+
+    //----------------------------------------------------------------------
+    // reportBest
+    //----------------------------------------------------------------------
+    // Records a map found by a worker, timing the first to reach the target.
+    //
+
+    public synchronized void reportBest(int[][] map, double affinity) {
+        if (affinity > bestAffinity) {
+            bestAffinity = affinity;
+            bestMap = map;
+        }
+        if (affinity >= targetAffinity && timeToTargetNanos < 0) {
+            timeToTargetNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // finish
+    //----------------------------------------------------------------------
+    // Records the end of the run.
+    //
+
+    public synchronized void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    public synchronized double seconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    public synchronized long evaluations() {
+        return evaluations;
+    }
+
+    public synchronized double evaluationsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : evaluations / (elapsedNanos / 1e9);
+    }
+
+    // Seconds workers spent waiting, or -1 if the solver does not measure it
+    public synchronized double waitSeconds() {
+        return waitMeasured ? waitNanos / 1e9 : -1.0;
+    }
+
+    // Seconds until the target affinity was reached, or -1 if it never was
+    public synchronized double timeToTargetSeconds() {
+        return timeToTargetNanos < 0 ? -1.0 : timeToTargetNanos / 1e9;
+    }
+
+    public synchronized double bestAffinity() {
+        return bestAffinity;
+    }
+
+    public synchronized int[][] bestMap() {
+        return bestMap;
+    }
+
+    //----------------------------------------------------------------------
+    // summary
+    //----------------------------------------------------------------------
+    // Returns the statistics as one line: SUMMARY, workers, target,
+    // elapsed, evaluations, wait and time to target (nanoseconds, -1 for a
+    // wait that is not measured) and the best affinity.
+    //
+
+    public synchronized String summary() {
+        return String.join(" ", SUMMARY, Integer.toString(workers), Double.toString(targetAffinity), Long.toString(elapsedNanos),
+                Long.toString(evaluations), Long.toString(waitMeasured ? waitNanos : -1), Long.toString(timeToTargetNanos),
+                Double.toString(bestAffinity));
+    }
+
+    // Reads a line written by summary, or returns null if the line is not a summary
+    static RunStats parseSummary(String line) {
+        String[] fields = line.trim().split(" ");
+        if (fields.length != 8 || !fields[0].equals(SUMMARY)) {
+            return null;
+        }
+        RunStats stats = new RunStats(Integer.parseInt(fields[1]), Double.parseDouble(fields[2]));
+        stats.elapsedNanos = Long.parseLong(fields[3]);
+        stats.evaluations = Long.parseLong(fields[4]);
+        stats.waitNanos = Math.max(0, Long.parseLong(fields[5]));
+        stats.waitMeasured = Long.parseLong(fields[5]) >= 0;
+        stats.timeToTargetNanos = Long.parseLong(fields[6]);
+        stats.bestAffinity = Double.parseDouble(fields[7]);
+        return stats;
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	ScalingBenchmark
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Measures how the parallel solvers scale with the number of worker threads.
+//
+//	For each mode, run the same fixed workload (generations) with 1, 2, 4, ... workers up to the
+//	configured number of workers, REPEATS times each, and keep the fastest run
+//	|
+//	Report per run: wall time, evaluations per second, speedup and efficiency against one worker,
+//	time until the target affinity was first reached, and time spent waiting on barriers and
+//	exchanges (shown as - for nsga2 and steady, which do not measure it)
+//	|
+//	Print a table and, with -Dbenchmark.csv=file, write the same rows as CSV (-1 for a value that
+//	was not measured)
+//
+// The pga mode is the original barrier and exchanger solver (ParallelGeneticAlgorithmWithoutGUI).
+// Its worker count, phaser and exchangers are fixed when the class loads, so every run starts a
+// new JVM with -Dworkers=N and reads back the RunStats summary it prints; its wall time covers the
+// threads only, not the JVM start, and includes the solver's console output under its lock.
+//
+// ThreadLocalRandom cannot be seeded, so runs are repeatable in workload (generations and
+// population sizes) but not in the exact maps found. Time to target is therefore noisy and
+// throughput (evaluations per second) is the figure to compare.
+//
+//	java ScalingBenchmark [mode ...]		Modes: pga, island, nsga2, steady, tempering (default: all)
+//	-Dbenchmark.generations=N				Generations (tempering: sweeps) of every run
+//	-Dbenchmark.repeats=N					Runs per worker count
+//	-Dtarget=A								Affinity whose first arrival is timed
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class ScalingBenchmark {
+
+    // A solver that can run a fixed workload on a given number of workers
+    interface Mode {
+        RunStats run(int workers, int generations, double targetAffinity) throws InterruptedException, IOException;
+    }
+
+    private final static int GENERATIONS = Integer.getInteger("benchmark.generations", 200);	// Generations of every run
+    private final static int REPEATS = Integer.getInteger("benchmark.repeats", 3);				// Runs per worker count, fastest is kept
+    private final static double TARGET = Double.parseDouble(System.getProperty("target", "200"));	// Affinity whose first arrival is timed
+
+    private final static Map<String, Mode> MODES = new LinkedHashMap<>();	// Benchmarked solvers by name
+
+    static {
+        MODES.put("pga", (workers, iterations, target) -> runProcess(ParallelGeneticAlgorithmWithoutGUI.class, workers, iterations, target));
+        MODES.put("island", (workers, generations, target) ->
+                new IslandModel(SchedulerConfig.current().withWorkers(workers)).run(generations, target));
+        MODES.put("nsga2", MultiObjectiveGeneticAlgorithm::benchmark);
+        MODES.put("steady", (workers, generations, target) -> new SteadyStateGeneticAlgorithm(workers).run(generations, target));
+        MODES.put("tempering", (workers, sweeps, target) -> new ParallelTempering(workers).run(sweeps, target));
+    }
+
+    //----------------------------------------------------------------------
+    // runProcess
+    //----------------------------------------------------------------------
+    // Runs the main class of a solver in a new JVM on the given number of
+    // workers and returns the statistics it prints with
+    // -Dbenchmark.summary=true. The solver's other output is discarded.
+    //
+
+    private static RunStats runProcess(Class<?> solver, int workers, int iterations, double target) throws InterruptedException, IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-Dworkers=" + workers, "-Diterations=" + iterations, "-Dtarget=" + target, "-Dbenchmark.summary=true",
+                solver.getName()).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+        RunStats stats = null;
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                RunStats summary = RunStats.parseSummary(line);
+                if (summary != null) {
+                    stats = summary;
+                }
+            }
+        }
+        int status = process.waitFor();
+        if (status != 0 || stats == null) {
+            throw new IOException(solver.getName() + " on " + workers + " workers exited with status " + status
+                    + (stats == null ? " without a summary" : ""));
+        }
+        return stats;
+    }
+
+    //----------------------------------------------------------------------
+    // workerCounts
+    //----------------------------------------------------------------------
+    // Returns 1, 2, 4, ... up to max, always ending with max itself.
+    //
+
+    static List<Integer> workerCounts(int max) {
+        List<Integer> counts = new ArrayList<>();
+        for (int count = 1; count < max; count *= 2) {
+            counts.add(count);
+        }
+        counts.add(max);
+        return counts;
+    }
+
+    //----------------------------------------------------------------------
+    // measure
+    //----------------------------------------------------------------------
+    // Runs the mode REPEATS times on the given number of workers and
+    // returns the fastest run.
+    //
+
+    private static RunStats measure(Mode mode, int workers) throws InterruptedException, IOException {
+        RunStats fastest = null;
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+            RunStats stats = mode.run(workers, GENERATIONS, TARGET);
+            if (fastest == null || stats.seconds() < fastest.seconds()) {
+                fastest = stats;
+            }
+        }
+        return fastest;
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Benchmarks the modes given as arguments, or all of them.
+    //
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        SchedulerConfig config = SchedulerConfig.current();
+        System.out.println(config + "\n");
+
+        List<String> modes = new ArrayList<>();
+        for (String arg : args) {
+            if (!MODES.containsKey(arg)) {
+                System.out.println("Unknown mode " + arg + ", expected one of " + MODES.keySet());
+                return;
+            }
+            modes.add(arg);
+        }
+        if (modes.isEmpty()) {
+            modes.addAll(MODES.keySet());
+        }
+
+        List<String> rows = new ArrayList<>();
+        String header = "mode,workers,seconds,evaluations,evaluations_per_second,speedup,efficiency,time_to_target,wait_seconds,best_affinity";
+        System.out.println(String.format("%-9s %7s %9s %12s %12s %8s %10s %10s %9s %9s",
+                "Mode", "Workers", "Seconds", "Evaluations", "Evals/s", "Speedup", "Efficiency", "To target", "Waiting", "Best"));
+
+        for (String name : modes) {
+            Mode mode = MODES.get(name);
+            // Warm up the JIT so the single worker baseline is not penalized
+            mode.run(1, Math.max(1, GENERATIONS / 10), TARGET);
+
+            double baseline = 0.0;
+            for (int workers : workerCounts(config.workers)) {
+                RunStats stats = measure(mode, workers);
+                if (workers == 1) {
+                    baseline = stats.evaluationsPerSecond();
+                }
+                double speedup = baseline == 0.0 ? 0.0 : stats.evaluationsPerSecond() / baseline;
+                double efficiency = speedup / workers;
+
+                System.out.println(String.format(Locale.ROOT, "%-9s %7d %9.3f %12d %12.0f %8.2f %9.0f%% %10s %9s %9.1f",
+                        name, workers, stats.seconds(), stats.evaluations(), stats.evaluationsPerSecond(), speedup, efficiency * 100,
+                        stats.timeToTargetSeconds() < 0 ? "-" : String.format(Locale.ROOT, "%.3f", stats.timeToTargetSeconds()),
+                        stats.waitSeconds() < 0 ? "-" : String.format(Locale.ROOT, "%.3f", stats.waitSeconds()), stats.bestAffinity()));
+                rows.add(String.format(Locale.ROOT, "%s,%d,%.6f,%d,%.1f,%.4f,%.4f,%.6f,%.6f,%.1f",
+                        name, workers, stats.seconds(), stats.evaluations(), stats.evaluationsPerSecond(), speedup, efficiency,
+                        stats.timeToTargetSeconds(), stats.waitSeconds(), stats.bestAffinity()));
+            }
+        }
+
+        String csv = System.getProperty("benchmark.csv");
+        if (csv != null) {
+            try (PrintWriter out = new PrintWriter(new FileWriter(csv))) {
+                out.println(header);
+                for (String row : rows) {
+                    out.println(row);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
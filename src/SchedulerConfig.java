@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	SchedulerConfig
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Decides how many worker threads to run and how they are grouped by NUMA node.
+//
+//	-Dworkers=N			Number of workers, defaults to Runtime.availableProcessors (which the JVM
+//						already limits to the container's CPU quota)
+//	-Dnuma.nodes=N		Pretend the machine has N nodes, for testing on a single node machine
+//
+// On Linux the nodes and their CPUs are read from /sys/devices/system/node/node*/cpulist, and the
+// cgroup v2 quota from /sys/fs/cgroup/cpu.max is reported. Workers are split over the nodes in
+// contiguous groups proportional to each node's CPU count. Nodes that receive no worker are left
+// out, so nodes counts and numbers (0 to nodes - 1) only the nodes in use; the system's own node
+// number of each, which need not be contiguous (for example nodes 0 and 2 online), is nodeId.
+//
+// Java cannot pin threads to CPUs, so pinning is left to the launcher: pinningHint(node) gives the
+// numactl command that binds a process (for example an IslandNode) and its memory to one node.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class SchedulerConfig {
+
+    private final static Path NODE_DIRECTORY = Paths.get("/sys/devices/system/node");	// Linux NUMA topology
+    private final static Path CPU_MAX = Paths.get("/sys/fs/cgroup/cpu.max");			// cgroup v2 CPU quota
+
+    private static SchedulerConfig current;			// Configuration of this JVM, detected once
+
+    final int workers;								// Number of worker threads
+    final int nodes;								// Number of NUMA nodes the workers are spread over
+    final double cpuQuota;							// CPUs allowed by the cgroup, or 0 if unlimited
+    private final int[] workerNode;					// Node of each worker
+    private final int[] nodeId;						// System node number of each node in use, -1 if unknown
+    private final List<List<Integer>> usedCpus;		// CPUs of each node in use
+    private final Map<Integer, List<Integer>> nodeCpus;	// CPUs of every detected node by node number, empty if unknown
+
+    public SchedulerConfig(int workers, Map<Integer, List<Integer>> nodeCpus, double cpuQuota) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is required, was " + workers);
+        }
+        this.workers = workers;
+        this.nodeCpus = nodeCpus;
+        this.cpuQuota = cpuQuota;
+        List<Integer> ids = new ArrayList<>(nodeCpus.keySet());
+        int candidates = Math.max(1, Math.min(workers, ids.size()));
+
+        // Split the workers into contiguous groups proportional to each node's CPUs
+        int totalCpus = 0;
+        for (int candidate = 0; candidate < candidates; candidate++) {
+            totalCpus += Math.max(1, ids.isEmpty() ? 1 : nodeCpus.get(ids.get(candidate)).size());
+        }
+        int[] group = new int[workers];
+        int cpusBefore = 0;
+        for (int candidate = 0; candidate < candidates; candidate++) {
+            int cpus = Math.max(1, ids.isEmpty() ? 1 : nodeCpus.get(ids.get(candidate)).size());
+            int from = (int) ((long) workers * cpusBefore / totalCpus);
+            int to = (int) ((long) workers * (cpusBefore + cpus) / totalCpus);
+            for (int worker = from; worker < to; worker++) {
+                group[worker] = candidate;
+            }
+            cpusBefore += cpus;
+        }
+
+        // Number the nodes that received workers, leaving out the empty ones
+        int[] number = new int[candidates];
+        Arrays.fill(number, -1);
+        int used = 0;
+        this.workerNode = new int[workers];
+        for (int worker = 0; worker < workers; worker++) {
+            if (number[group[worker]] < 0) {
+                number[group[worker]] = used++;
+            }
+            workerNode[worker] = number[group[worker]];
+        }
+        this.nodes = used;
+        this.nodeId = new int[used];
+        this.usedCpus = new ArrayList<>();
+        for (int candidate = 0; candidate < candidates; candidate++) {
+            if (number[candidate] >= 0) {
+                nodeId[number[candidate]] = ids.isEmpty() ? -1 : ids.get(candidate);
+                usedCpus.add(ids.isEmpty() ? new ArrayList<>() : nodeCpus.get(ids.get(candidate)));
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // current
+    //----------------------------------------------------------------------
+    // Returns the configuration of this JVM, detecting it on first use.
+    //
+
+    public static synchronized SchedulerConfig current() {
+        if (current == null) {
+            current = detect();
+        }
+        return current;
+    }
+
+    //----------------------------------------------------------------------
+    // detect
+    //----------------------------------------------------------------------
+    // Builds a configuration from the system properties and the Linux
+    // NUMA and cgroup files, falling back to a single node.
+    //
+
+    public static SchedulerConfig detect() {
+        int workers = Integer.getInteger("workers", Runtime.getRuntime().availableProcessors());
+        Map<Integer, List<Integer>> nodeCpus = readNodes();
+
+        // Split the CPUs of a single node into pretend nodes when asked to
+        int fakeNodes = Integer.getInteger("numa.nodes", 0);
+        if (fakeNodes > 0) {
+            List<Integer> cpus = new ArrayList<>();
+            for (List<Integer> node : nodeCpus.values()) {
+                cpus.addAll(node);
+            }
+            if (cpus.size() < fakeNodes) {
+                cpus.clear();
+                for (int cpu = 0; cpu < Math.max(workers, fakeNodes); cpu++) {
+                    cpus.add(cpu);
+                }
+            }
+            nodeCpus = new TreeMap<>();
+            for (int node = 0; node < fakeNodes; node++) {
+                nodeCpus.put(node, new ArrayList<>(cpus.subList(cpus.size() * node / fakeNodes, cpus.size() * (node + 1) / fakeNodes)));
+            }
+        }
+        return new SchedulerConfig(workers, nodeCpus, readCpuQuota());
+    }
+
+    //----------------------------------------------------------------------
+    // withWorkers
+    //----------------------------------------------------------------------
+    // Returns a configuration with the same nodes and quota but a different
+    // number of workers.
+    //
+
+    public SchedulerConfig withWorkers(int count) {
+        return new SchedulerConfig(count, nodeCpus, cpuQuota);
+    }
+
+    //----------------------------------------------------------------------
+    // nodeOf
+    //----------------------------------------------------------------------
+    // Returns the NUMA node the given worker belongs to.
+    //
+
+    public int nodeOf(int worker) {
+        return workerNode[worker];
+    }
+
+    //----------------------------------------------------------------------
+    // workersOf
+    //----------------------------------------------------------------------
+    // Returns the workers belonging to the given node, in order.
+    //
+
+    public int[] workersOf(int node) {
+        int count = 0;
+        for (int n : workerNode) {
+            if (n == node) {
+                count++;
+            }
+        }
+        int[] members = new int[count];
+        int index = 0;
+        for (int worker = 0; worker < workers; worker++) {
+            if (workerNode[worker] == node) {
+                members[index++] = worker;
+            }
+        }
+        return members;
+    }
+
+    //----------------------------------------------------------------------
+    // nodeId
+    //----------------------------------------------------------------------
+    // Returns the system's number of the given node (0 to nodes - 1), or
+    // -1 if the topology is unknown.
+    //
+
+    public int nodeId(int node) {
+        return nodeId[node];
+    }
+
+    //----------------------------------------------------------------------
+    // pinningHint
+    //----------------------------------------------------------------------
+    // Returns the command prefix that binds a process and its memory to
+    // the given node, or an empty string if the topology is unknown.
+    //
+
+    public String pinningHint(int node) {
+        if (nodeId[node] < 0) {
+            return "";
+        }
+        return "numactl --cpunodebind=" + nodeId[node] + " --membind=" + nodeId[node] + " (CPUs " + usedCpus.get(node) + ")";
+    }
+
+    //----------------------------------------------------------------------
+    // toString
+    //----------------------------------------------------------------------
+    // Describes the workers, nodes and CPU quota.
+    //
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder();
+        description.append(workers).append(" workers on ").append(nodes).append(" NUMA node(s)");
+        if (cpuQuota > 0) {
+            description.append(", cgroup CPU quota ").append(cpuQuota);
+        }
+        for (int node = 0; node < nodes; node++) {
+            description.append("\n  Node ").append(nodeId[node] < 0 ? node : nodeId[node]).append(": ").append(workersOf(node).length).append(" workers");
+            if (nodeId[node] >= 0) {
+                description.append(", ").append(pinningHint(node));
+            }
+        }
+        return description.toString();
+    }
+
+    // Reads the CPUs of every node with CPUs by node number, or an empty map if the topology is unknown
+    private static Map<Integer, List<Integer>> readNodes() {
+        Map<Integer, List<Integer>> nodes = new TreeMap<>();
+        if (!Files.isDirectory(NODE_DIRECTORY)) {
+            return nodes;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(NODE_DIRECTORY, "node[0-9]*")) {
+            for (Path directory : stream) {
+                String cpulist = new String(Files.readAllBytes(directory.resolve("cpulist")), StandardCharsets.US_ASCII).trim();
+                List<Integer> cpus = parseCpuList(cpulist);
+                if (!cpus.isEmpty()) {
+                    nodes.put(nodeNumber(directory), cpus);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Unreadable topology, treat the machine as a single node
+            nodes.clear();
+        }
+        return nodes;
+    }
+
+    // Number of a /sys/devices/system/node/nodeN directory
+    private static int nodeNumber(Path directory) {
+        return Integer.parseInt(directory.getFileName().toString().substring(4));
+    }
+
+    //----------------------------------------------------------------------
+    // parseCpuList
+    //----------------------------------------------------------------------
+    // Parses a Linux CPU list such as "0-3,8-11,16".
+    //
+
+    static List<Integer> parseCpuList(String cpulist) {
+        List<Integer> cpus = new ArrayList<>();
+        if (cpulist.isEmpty()) {
+            return cpus;
+        }
+        for (String range : cpulist.split(",")) {
+            int dash = range.indexOf('-');
+            int from = Integer.parseInt(range.substring(0, dash < 0 ? range.length() : dash).trim());
+            int to = dash < 0 ? from : Integer.parseInt(range.substring(dash + 1).trim());
+            for (int cpu = from; cpu <= to; cpu++) {
+                cpus.add(cpu);
+            }
+        }
+        return cpus;
+    }
+
+    // Reads the cgroup v2 CPU quota in CPUs, 0 if unlimited or unknown
+    private static double readCpuQuota() {
+        try {
+            String[] fields = new String(Files.readAllBytes(CPU_MAX), StandardCharsets.US_ASCII).trim().split("\\s+");
+            if (fields.length == 2 && !fields[0].equals("max")) {
+                return Double.parseDouble(fields[0]) / Double.parseDouble(fields[1]);
+            }
+        } catch (IOException | NumberFormatException e) {
+            // No cgroup v2 quota available
+        }
+        return 0.0;
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	SocketMigrationTransport
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// MigrationTransport for an island running in its own JVM. A daemon I/O thread serves a
+// non-blocking connection to the MigrationCoordinator; the island thread only queues frames and
+// waits on a BlockingQueue for immigrants.
+//
+// An exchange that times out leaves its offer with the coordinator. The next exchange sends a new
+// OFFER with the island's current elite, which supersedes the old one, so the map that migrates
+// is always the latest. If a partner took the old offer in the meantime, the immigrant is kept
+// and handed out by the next exchange, so no genome is lost.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class SocketMigrationTransport implements MigrationTransport {
+
+    private final Selector selector;						// Selector of the I/O thread
+    private final MigrationConnection connection;			// Connection to the coordinator
+    private final BlockingQueue<int[][]> immigrants = new LinkedBlockingQueue<>();	// Genomes received from other islands
+    private final Thread ioThread;							// Thread serving the connection
+    private volatile boolean stopped = false;				// Set when the coordinator sends STOP
+    private volatile boolean closed = false;				// Set once the island has left
+
+    public SocketMigrationTransport(String host, int port, int islandId) throws IOException {
+        selector = Selector.open();
+
+        // Connect once, then switch the channel to non-blocking mode
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.configureBlocking(false);
+        connection = new MigrationConnection(channel, channel.register(selector, SelectionKey.OP_READ));
+
+        // Introduce the island to the coordinator
+        connection.send(MigrationConnection.HELLO, ByteBuffer.allocate(4).putInt(islandId).array());
+
+        ioThread = new Thread(this::serve, "Migration I/O " + islandId);
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    //----------------------------------------------------------------------
+    // serve
+    //----------------------------------------------------------------------
+    // Runs on the I/O thread, writing queued frames and reading frames
+    // from the coordinator until closed.
+    //
+
+    private void serve() {
+        try {
+            while (!closed || connection.channel.isOpen()) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isReadable() && !connection.read(this::handle)) {
+                        stopped = true;
+                        connection.close();
+                        return;
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                        // Close once DONE has been delivered
+                        if (closed && (key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+                            connection.close();
+                            return;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Migration connection lost: " + e.getMessage());
+            stopped = true;
+            connection.close();
+        }
+    }
+
+    // Handles a single frame received from the coordinator
+    private void handle(MigrationConnection from, byte type, ByteBuffer payload) {
+        if (type == MigrationConnection.IMMIGRANT) {
+            immigrants.add(GenomeCodec.decode(payload));
+        } else if (type == MigrationConnection.STOP) {
+            stopped = true;
+        }
+    }
+
+    @Override
+    public int[][] exchange(int[][] map, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        // Hand out an immigrant left over from an earlier timed out exchange first
+        int[][] immigrant = immigrants.poll();
+        if (immigrant != null) {
+            return immigrant;
+        }
+        // Offer the current elite, replacing an offer still waiting at the coordinator
+        connection.send(MigrationConnection.OFFER, GenomeCodec.encode(map));
+        immigrant = immigrants.poll(timeout, unit);
+        if (immigrant == null) {
+            throw new TimeoutException("No island arrived within " + timeout + " " + unit);
+        }
+        return immigrant;
+    }
+
+    @Override
+    public void reportBest(int[][] map, double affinity) {
+        ByteBuffer payload = ByteBuffer.allocate(8 + GenomeCodec.encodedSize(map.length, map[0].length));
+        payload.putDouble(affinity);
+        GenomeCodec.encode(map, payload);
+        connection.send(MigrationConnection.BEST, payload.array());
+    }
+
+    @Override
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    //----------------------------------------------------------------------
+    // close
+    //----------------------------------------------------------------------
+    // Tells the coordinator the island is done and waits briefly for the
+    // I/O thread to deliver it.
+    //
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        connection.send(MigrationConnection.DONE, null);
+        try {
+            ioThread.join(TimeUnit.SECONDS.toMillis(5));
+            selector.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	SteadyStateGeneticAlgorithm
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Steady-state mode of the floor map genetic algorithm: every worker thread breeds from and inserts
+// into one shared population, with no generations, no barriers and no locks. A worker never waits
+// for another, so there is no idle time at generation boundaries as with the synchronize points of
+// ParallelGeneticAlgorithm.
+//
+//	Each worker repeats, for generations * MEMBERS_PER_WORKER births:
+//	|
+//	Pick two parents by binary tournament, reading random slots of the population
+//	|
+//	Create and evaluate a child with the operator chosen by the worker's own OperatorSelector
+//	|
+//	Insert the child over the worst of REPLACE_SAMPLE random slots if it is better, with a
+//	compare-and-set on that slot; if another worker replaced the slot first, sample again
+//	(at most INSERT_ATTEMPTS times)
+//
+// The population is an AtomicReferenceArray of immutable members, so a reader always sees a map
+// together with its own affinity. Replacing the worst of a small sample instead of the global
+// worst keeps every insertion O(REPLACE_SAMPLE) without a shared heap to contend on.
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class SteadyStateGeneticAlgorithm {
+
+    // A floor map and its affinity (immutable)
+    private static class Member {
+        final int[][] map;
+        final double affinity;
+
+        Member(int[][] map, double affinity) {
+            this.map = map;
+            this.affinity = affinity;
+        }
+    }
+
+    private final static int MEMBERS_PER_WORKER = 64;	// Population size per worker, and births per worker per generation
+    private final static int GENERATIONS = 500;			// Generations worth of births each worker runs by default
+    private final static int REPLACE_SAMPLE = 4;		// Slots sampled to find a map to replace
+    private final static int INSERT_ATTEMPTS = 3;		// Samples tried before a child is dropped
+
+    private final int workers;							// Number of worker threads
+    private final AtomicReferenceArray<Member> population;	// Shared population
+    private final AtomicLong conflicts = new AtomicLong();	// Insertions that lost a slot to another worker
+
+    public SteadyStateGeneticAlgorithm(int workers) {
+        this.workers = workers;
+        this.population = new AtomicReferenceArray<>(workers * MEMBERS_PER_WORKER);
+    }
+
+    //----------------------------------------------------------------------
+    // run
+    //----------------------------------------------------------------------
+    // Fills the population and breeds on every worker for the given number
+    // of generations worth of births. Returns the statistics of the run.
+    //
+
+    public RunStats run(int generations, double targetAffinity) throws InterruptedException {
+        RunStats stats = new RunStats(workers, targetAffinity);
+        Thread[] threads = new Thread[workers];
+        for (int worker = 0; worker < workers; worker++) {
+            int id = worker;
+            threads[worker] = new Thread(() -> breed(id, generations, stats), "Breeder " + (worker + 1));
+            threads[worker].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        stats.finish();
+        return stats;
+    }
+
+    //----------------------------------------------------------------------
+    // breed
+    //----------------------------------------------------------------------
+    // Runs on the worker thread. The worker first fills its own share of
+    // the population, then breeds until its births run out.
+    //
+
+    private void breed(int worker, int generations, RunStats stats) {
+        OperatorSelector selector = new OperatorSelector();
+        long evaluations = 0;
+        double best = Double.NEGATIVE_INFINITY;
+
+        // Fill this worker's share of the slots
+        for (int i = worker * MEMBERS_PER_WORKER; i < (worker + 1) * MEMBERS_PER_WORKER; i++) {
+            int[][] map = ParallelGeneticAlgorithm.generateRandomFloorMap();
+            Member member = new Member(map, ParallelGeneticAlgorithm.calculateAffinity(map));
+            evaluations++;
+            population.set(i, member);
+            if (member.affinity > best) {
+                best = member.affinity;
+                stats.reportBest(member.map, best);
+            }
+        }
+
+        long births = (long) generations * MEMBERS_PER_WORKER;
+        for (long birth = 0; birth < births; birth++) {
+            Member a = tournament();
+            Member b = tournament();
+            double parentAffinity = Math.max(a.affinity, b.affinity);
+
+            long start = System.nanoTime();
+            VariationOperator operator = selector.select();
+            int[][] child = operator.apply(a.map, b.map);
+            boolean mutated = false;
+            if (child != null && operator.isCrossover() && selector.shouldMutate()) {
+                child = VariationOperator.flip(child);
+                mutated = true;
+            }
+            double childAffinity = Double.NEGATIVE_INFINITY;
+            if (child != null) {
+                childAffinity = ParallelGeneticAlgorithm.calculateAffinity(child);
+                evaluations++;
+            }
+            selector.reward(operator, childAffinity - parentAffinity, System.nanoTime() - start);
+            if (mutated) {
+                selector.mutated(childAffinity > parentAffinity);
+            }
+
+            if (child != null && insert(new Member(child, childAffinity)) && childAffinity > best) {
+                best = childAffinity;
+                stats.reportBest(child, best);
+            }
+        }
+        stats.add(evaluations);
+    }
+
+    //----------------------------------------------------------------------
+    // insert
+    //----------------------------------------------------------------------
+    // Replaces the worst of a random sample of slots with the child if the
+    // child is better. Returns true if the child entered the population.
+    //
+
+    private boolean insert(Member child) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < INSERT_ATTEMPTS; attempt++) {
+            int worstSlot = -1;
+            Member worst = null;
+            for (int s = 0; s < REPLACE_SAMPLE; s++) {
+                int slot = random.nextInt(population.length());
+                Member member = population.get(slot);
+                if (member != null && (worst == null || member.affinity < worst.affinity)) {
+                    worstSlot = slot;
+                    worst = member;
+                }
+            }
+            if (worst == null) {
+                // Only slots still being filled were sampled
+                continue;
+            }
+            if (child.affinity <= worst.affinity) {
+                return false;
+            }
+            if (population.compareAndSet(worstSlot, worst, child)) {
+                return true;
+            }
+            conflicts.incrementAndGet();
+        }
+        return false;
+    }
+
+    // Binary tournament selection on affinity over the shared population
+    private Member tournament() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Member a = member(random);
+        Member b = member(random);
+        return a.affinity >= b.affinity ? a : b;
+    }
+
+    // Random member, skipping slots other workers are still filling
+    private Member member(ThreadLocalRandom random) {
+        Member member;
+        while ((member = population.get(random.nextInt(population.length()))) == null) {
+            // The calling worker's own share is always filled, so this ends
+        }
+        return member;
+    }
+
+    //----------------------------------------------------------------------
+    // main
+    //----------------------------------------------------------------------
+    // Runs the steady-state algorithm with one worker per configured
+    // worker thread. An optional argument gives the number of generations
+    // worth of births.
+    //
+
+    public static void main(String[] args) throws InterruptedException {
+        SchedulerConfig config = SchedulerConfig.current();
+        System.out.println(config + "\n");
+
+        int generations = args.length > 0 ? Integer.parseInt(args[0]) : GENERATIONS;
+        SteadyStateGeneticAlgorithm algorithm = new SteadyStateGeneticAlgorithm(config.workers);
+        RunStats result = algorithm.run(generations, Double.POSITIVE_INFINITY);
+
+        System.out.println("Global best affinity: " + result.bestAffinity() + " - Evaluations/s: " + (long) result.evaluationsPerSecond()
+                + " - Slot conflicts: " + algorithm.conflicts.get());
+        ParallelGeneticAlgorithm.printArray(result.bestMap());
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	VariationOperator
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// The operators an Island can use to create a child from two parents. Mutation operators only
+// use the first parent. Every operator returns a new map and never modifies its parents; a
+// crossover that does not produce exactly STATIONS stations returns null, like
+// ParallelGeneticAlgorithm.crossover.
+//
+//	SWAP				Swaps two usable cells holding different station types
+//	FLIP				One cell changes like the original mutate (1 and 2 swap types, 0 becomes a
+//						station), but a station that appears on an empty cell is moved there from
+//						another cell, so the number of stations stays the same
+//	BLOCK_MOVE			Swaps the contents of two BLOCK by BLOCK areas of the floor
+//	ROW_CROSSOVER		The original crossover: top half of parent1, bottom half of parent2
+//	COLUMN_CROSSOVER	Left half of parent1, right half of parent2
+//	UNIFORM_CROSSOVER	Each cell taken from a random parent
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public enum VariationOperator {
+
+    SWAP {
+        @Override
+        int[][] apply(int[][] parent1, int[][] parent2) {
+            int[][] child = ParallelGeneticAlgorithm.copyMap(parent1);
+            FloorMask mask = ParallelGeneticAlgorithm.maskFor(child);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            // Try a few times to find two cells of different types
+            for (int attempt = 0; attempt < 8; attempt++) {
+                int a = random.nextInt(mask.usableCount);
+                int b = random.nextInt(mask.usableCount);
+                int valueA = child[mask.cellRow[a]][mask.cellCol[a]];
+                int valueB = child[mask.cellRow[b]][mask.cellCol[b]];
+                if (valueA != valueB) {
+                    child[mask.cellRow[a]][mask.cellCol[a]] = valueB;
+                    child[mask.cellRow[b]][mask.cellCol[b]] = valueA;
+                    break;
+                }
+            }
+            return child;
+        }
+    },
+
+    FLIP {
+        @Override
+        int[][] apply(int[][] parent1, int[][] parent2) {
+            return flip(ParallelGeneticAlgorithm.copyMap(parent1));
+        }
+    },
+
+    BLOCK_MOVE {
+        @Override
+        int[][] apply(int[][] parent1, int[][] parent2) {
+            int[][] child = ParallelGeneticAlgorithm.copyMap(parent1);
+            FloorMask mask = ParallelGeneticAlgorithm.maskFor(child);
+            int rows = child.length;
+            int columns = child[0].length;
+            if (rows < BLOCK || columns < BLOCK) {
+                return child;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int fromRow = random.nextInt(rows - BLOCK + 1);
+            int fromCol = random.nextInt(columns - BLOCK + 1);
+            int toRow = random.nextInt(rows - BLOCK + 1);
+            int toCol = random.nextInt(columns - BLOCK + 1);
+
+            // Swap cell by cell, skipping pairs where either cell is unusable
+            for (int i = 0; i < BLOCK; i++) {
+                for (int j = 0; j < BLOCK; j++) {
+                    if (mask.isUsable(fromRow + i, fromCol + j) && mask.isUsable(toRow + i, toCol + j)) {
+                        int value = child[fromRow + i][fromCol + j];
+                        child[fromRow + i][fromCol + j] = child[toRow + i][toCol + j];
+                        child[toRow + i][toCol + j] = value;
+                    }
+                }
+            }
+            return child;
+        }
+    },
+
+    ROW_CROSSOVER {
+        @Override
+        int[][] apply(int[][] parent1, int[][] parent2) {
+            return ParallelGeneticAlgorithm.crossover(parent1, parent2);
+        }
+    },
+
+    COLUMN_CROSSOVER {
+        @Override
+        int[][] apply(int[][] parent1, int[][] parent2) {
+            int[][] child = new int[parent1.length][parent1[0].length];
+            int half = parent1[0].length / 2;
+            for (int i = 0; i < child.length; i++) {
+                for (int j = 0; j < child[0].length; j++) {
+                    child[i][j] = j < half ? parent1[i][j] : parent2[i][j];
+                }
+            }
+            return validate(child);
+        }
+    },
+
+    UNIFORM_CROSSOVER {
+        @Override
+        int[][] apply(int[][] parent1, int[][] parent2) {
+            int[][] child = new int[parent1.length][parent1[0].length];
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < child.length; i++) {
+                for (int j = 0; j < child[0].length; j++) {
+                    child[i][j] = random.nextBoolean() ? parent1[i][j] : parent2[i][j];
+                }
+            }
+            return validate(child);
+        }
+    };
+
+    final static int BLOCK = 2;				// Side length of the areas swapped by BLOCK_MOVE
+
+    // Creates a child from the given parents
+    abstract int[][] apply(int[][] parent1, int[][] parent2);
+
+    //----------------------------------------------------------------------
+    // isCrossover
+    //----------------------------------------------------------------------
+    // Returns true if the operator combines two parents.
+    //
+
+    boolean isCrossover() {
+        return this == ROW_CROSSOVER || this == COLUMN_CROSSOVER || this == UNIFORM_CROSSOVER;
+    }
+
+    //----------------------------------------------------------------------
+    // flip
+    //----------------------------------------------------------------------
+    // Mutates one random usable cell of the map in place, keeping the
+    // number of stations: a station swaps between type 1 and 2, an empty
+    // cell takes a random station type from the next station cell found
+    // (scanning from a random cell), which becomes empty.
+    //
+
+    static int[][] flip(int[][] map) {
+        FloorMask mask = ParallelGeneticAlgorithm.maskFor(map);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int cell = random.nextInt(mask.usableCount);
+        int row = mask.cellRow[cell];
+        int column = mask.cellCol[cell];
+        if (map[row][column] != 0) {
+            map[row][column] = 3 - map[row][column];
+            return map;
+        }
+        int start = random.nextInt(mask.usableCount);
+        for (int k = 0; k < mask.usableCount; k++) {
+            int from = (start + k) % mask.usableCount;
+            if (map[mask.cellRow[from]][mask.cellCol[from]] != 0) {
+                map[mask.cellRow[from]][mask.cellCol[from]] = 0;
+                map[row][column] = random.nextInt(2) + 1;
+                break;
+            }
+        }
+        return map;
+    }
+
+    // Returns the child if it has exactly STATIONS stations, otherwise null
+    static int[][] validate(int[][] child) {
+        int stations = 0;
+        for (int[] row : child) {
+            for (int value : row) {
+                if (value != 0) {
+                    stations++;
+                }
+            }
+        }
+        return stations == ParallelGeneticAlgorithm.STATIONS ? child : null;
+    }
+}
@@ -0,0 +1,146 @@
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+//
+//	VersionedFloor
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+// A floor map that publishes its changes as FloorDiffs instead of full copies (not thread safe, one
+// writer at a time).
+//
+//	set					Writes a cell; every cell that actually changes is added once to a change journal
+//	assignRows / assign	Copy the given rows or the whole of a map, comparing every cell, for writers
+//						that only know the area that changed
+//	|
+//	publish				Turns the journal into a FloorDiff from the last published version and clears
+//						it, so publishing costs O(changed cells) instead of O(rows * columns)
+//	|
+//	Consumers (MapGUI) keep their own copy of every floor (track) and apply its diffs in order
+//
+// Writers that know which cells they change (a mutation, one half of a crossover) write only those,
+// so the whole path from the change to the queued diff is O(changed cells).
+//
+// Writing a map of a different size starts a new chain: the floor is cleared and the next diff is a
+// full snapshot (baseVersion 0).
+//
+//-----------------------------------------------------------------------------------------------------------------------------------------------------------------
+public class VersionedFloor {
+
+    private int rows;							// Number of rows of the floor
+    private int columns;						// Number of columns of the floor
+    private int[][] cells;						// Current station type of every cell
+    private int[] journal;						// Cells changed since the last publish
+    private boolean[] journaled;				// Whether each cell is in the journal
+    private int journalSize = 0;				// Number of cells in the journal
+    private long version = 0;					// Last published version, 0 for the empty floor
+    private final int track;					// Identifies the floor in its diffs
+
+    public VersionedFloor(int rows, int columns) {
+        this(0, rows, columns);
+    }
+
+    public VersionedFloor(int track, int rows, int columns) {
+        this.track = track;
+        reset(rows, columns);
+    }
+
+    // Starts over with an empty floor of the given size
+    private void reset(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.cells = new int[rows][columns];
+        this.journal = new int[rows * columns];
+        this.journaled = new boolean[rows * columns];
+        this.journalSize = 0;
+        this.version = 0;
+    }
+
+    //----------------------------------------------------------------------
+    // set
+    //----------------------------------------------------------------------
+    // Sets the station type of a cell, journaling it if it changes.
+    //
+
+    public void set(int row, int column, int value) {
+        if (cells[row][column] == value) {
+            return;
+        }
+        cells[row][column] = value;
+        int cell = row * columns + column;
+        if (!journaled[cell]) {
+            journaled[cell] = true;
+            journal[journalSize++] = cell;
+        }
+    }
+
+    public int get(int row, int column) {
+        return cells[row][column];
+    }
+
+    //----------------------------------------------------------------------
+    // assign
+    //----------------------------------------------------------------------
+    // Makes the floor equal to the given map. Only cells that differ are
+    // written and journaled.
+    //
+
+    public void assign(int[][] map) {
+        if (map.length != rows || map[0].length != columns) {
+            reset(map.length, map[0].length);
+        }
+        assignRows(map, 0, rows);
+    }
+
+    //----------------------------------------------------------------------
+    // assignRows
+    //----------------------------------------------------------------------
+    // Copies rows firstRow (inclusive) to lastRow (exclusive) of a map of
+    // the floor's size. Only cells that differ are written and journaled.
+    //
+
+    public void assignRows(int[][] map, int firstRow, int lastRow) {
+        for (int i = firstRow; i < lastRow; i++) {
+            int[] current = cells[i];
+            int[] next = map[i];
+            for (int j = 0; j < columns; j++) {
+                if (current[j] != next[j]) {
+                    set(i, j, next[j]);
+                }
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // publish
+    //----------------------------------------------------------------------
+    // Returns the changes since the last published version as a new
+    // version and clears the journal.
+    //
+
+    public FloorDiff publish() {
+        int[] cell = new int[journalSize];
+        int[] value = new int[journalSize];
+        for (int n = 0; n < journalSize; n++) {
+            cell[n] = journal[n];
+            value[n] = cells[journal[n] / columns][journal[n] % columns];
+            journaled[journal[n]] = false;
+        }
+        journalSize = 0;
+        FloorDiff diff = new FloorDiff(track, version, version + 1, rows, columns, cell, value);
+        version++;
+        return diff;
+    }
+
+    //----------------------------------------------------------------------
+    // publish
+    //----------------------------------------------------------------------
+    // Assigns the given map and publishes it.
+    //
+
+    public FloorDiff publish(int[][] map) {
+        assign(map);
+        return publish();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}